@@ -0,0 +1,25 @@
+package fr.cantor.functional.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark, or those matching the first argument, 
+ * with the GC profiler which reports allocation rates and 
+ * garbage collections next to the timings.
+ */
+public class BenchmarkRunner
+{
+	public static void main(String[] args) throws RunnerException
+	{
+		String include = ( args.length > 0 ) ? args[0] : "fr\\.cantor\\.functional\\.benchmarks\\..*";
+		Options options = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
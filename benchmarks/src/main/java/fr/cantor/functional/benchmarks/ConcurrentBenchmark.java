@@ -0,0 +1,104 @@
+package fr.cantor.functional.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Sequential versus concurrent execution of a CPU-heavy map, 
+ * the same workload as ConcurrentIterable.main(), at several thread counts.
+ * The baseline is a parallel stream run in a ForkJoinPool of the same size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentBenchmark
+{
+	@Param({ "30000" })
+	private int size;
+	
+	@Param({ "1", "2", "4", "8" })
+	private int threads;
+	
+	private List<Integer> m_list;
+	private ForkJoinPool m_pool;
+	
+	@Setup
+	public void setup() throws FunctionalException
+	{
+		m_list = new Range(size).dump(new ArrayList<Integer>(size));
+		m_pool = new ForkJoinPool(threads);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		m_pool.shutdown();
+	}
+	
+	@Benchmark
+	public List<String> sequential() throws FunctionalException
+	{
+		return Iterable.wrap(m_list).map(Functions.SPELL).dump(new ArrayList<String>(size));
+	}
+	
+	@Benchmark
+	public List<String> concurrentRange() throws FunctionalException
+	{
+		return new Range(size).map(Functions.SPELL).concurrently(threads).dump(new ArrayList<String>(size));
+	}
+	
+	@Benchmark
+	public List<String> concurrentList() throws FunctionalException
+	{
+		return Iterable.wrap(m_list).map(Functions.SPELL).concurrently(threads).dump(new ArrayList<String>(size));
+	}
+	
+	@Benchmark
+	public List<String> concurrentListOrdered() throws FunctionalException
+	{
+		return Iterable.wrap(m_list).map(Functions.SPELL).concurrently(threads).ordered().dump(new ArrayList<String>(size));
+	}
+	
+	@Benchmark
+	public long concurrentInject() throws FunctionalException
+	{
+		return new Range(size).concurrently(threads).inject(0L, Functions.SUM, Functions.COMBINE_SUMS);
+	}
+	
+	@Benchmark
+	public List<String> parallelStream() throws InterruptedException, ExecutionException
+	{
+		return m_pool.submit(() -> m_list.parallelStream().map(Functions::spell).collect(Collectors.toList())).get();
+	}
+	
+	@Benchmark
+	public long parallelStreamInject() throws InterruptedException, ExecutionException
+	{
+		return m_pool.submit(() -> IntStream.range(0, size).parallel().boxed().reduce(0L, (sum, n) -> sum + n, Long::sum)).get();
+	}
+}
@@ -0,0 +1,95 @@
+package fr.cantor.functional.benchmarks;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.nuple.Pair;
+
+/**
+ * Functions shared by the benchmarks, written once so that every 
+ * benchmark measures the same work as its java.util.stream baseline.
+ */
+final class Functions
+{
+	private Functions()
+	{
+	}
+	
+	static int square(int n)
+	{
+		return n * n;
+	}
+	
+	static boolean isEven(int n)
+	{
+		return n % 2 == 0;
+	}
+	
+	/**
+	 * CPU-heavy transformation used to measure concurrent execution
+	 */
+	static String spell(int n)
+	{
+		return String.format("%09d", n)
+			.replace("0", " Zero ")
+			.replace("1", " One ")
+			.replace("2", " Two ")
+			.replace("3", " Three ")
+			.replace("4", " Four ")
+			.replace("5", " Five ")
+			.replace("6", " Six ")
+			.replace("7", " Seven ")
+			.replace("8", " Eight ")
+			.replace("9", " Nine ")
+			.trim();
+	}
+	
+	static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return square(n);
+		}
+	};
+	
+	static final Predicate1<Integer> EVEN = new Predicate1<Integer>()
+	{
+		public Boolean call(Integer n) throws FunctionalException
+		{
+			return isEven(n);
+		}
+	};
+	
+	static final Function1<String, Integer> SPELL = new Function1<String, Integer>()
+	{
+		public String call(Integer n) throws FunctionalException
+		{
+			return spell(n);
+		}
+	};
+	
+	static final Function2<Long, Long, Integer> SUM = new Function2<Long, Long, Integer>()
+	{
+		public Long call(Long sum, Integer n) throws FunctionalException
+		{
+			return sum + n;
+		}
+	};
+	
+	static final Function2<Long, Long, Long> COMBINE_SUMS = new Function2<Long, Long, Long>()
+	{
+		public Long call(Long sum1, Long sum2) throws FunctionalException
+		{
+			return sum1 + sum2;
+		}
+	};
+	
+	static final Function2<Long, Long, Pair<Integer, Integer>> SUM_PAIRS = new Function2<Long, Long, Pair<Integer, Integer>>()
+	{
+		public Long call(Long sum, Pair<Integer, Integer> pair) throws FunctionalException
+		{
+			return sum + pair.first + pair.second;
+		}
+	};
+}
@@ -0,0 +1,130 @@
+package fr.cantor.functional.benchmarks;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.IterableArray;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Core operators on a Range, each one next to its java.util.stream baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperatorsBenchmark
+{
+	@Param({ "1000", "100000" })
+	private int size;
+	
+	private Iterable<Integer> m_array;
+	private Integer[] m_values;
+	
+	@Setup
+	public void setup()
+	{
+		m_values = new Integer[size];
+		for ( int i = 0; i < size; i += 1 )
+		{
+			m_values[i] = i;
+		}
+		m_array = new IterableArray<Integer>(m_values);
+	}
+	
+	@Benchmark
+	public long rangeInject() throws FunctionalException
+	{
+		return new Range(size).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long rangeInjectStream()
+	{
+		return IntStream.range(0, size).boxed().reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+	
+	@Benchmark
+	public long mapSelectInject() throws FunctionalException
+	{
+		return new Range(size).map(Functions.SQUARE).select(Functions.EVEN).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long mapSelectInjectStream()
+	{
+		return IntStream.range(0, size).boxed().map(Functions::square).filter(Functions::isEven).reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+	
+	@Benchmark
+	public String join() throws FunctionalException
+	{
+		return new Range(size).join(",");
+	}
+	
+	@Benchmark
+	public String joinStream()
+	{
+		return IntStream.range(0, size).boxed().map(String::valueOf).collect(Collectors.joining(","));
+	}
+	
+	@Benchmark
+	public List<Integer> dump() throws FunctionalException
+	{
+		return new Range(size).map(Functions.SQUARE).dump(new ArrayList<Integer>());
+	}
+	
+	@Benchmark
+	public List<Integer> dumpStream()
+	{
+		return IntStream.range(0, size).boxed().map(Functions::square).collect(Collectors.toList());
+	}
+	
+	@Benchmark
+	public long combine() throws FunctionalException
+	{
+		return m_array.combine(m_array).inject(0L, Functions.SUM_PAIRS);
+	}
+	
+	@Benchmark
+	public long combineStream()
+	{
+		return IntStream.range(0, size)
+			.mapToObj(i -> new AbstractMap.SimpleImmutableEntry<Integer, Integer>(m_values[i], m_values[i]))
+			.reduce(0L, (sum, entry) -> sum + entry.getKey() + entry.getValue(), Long::sum);
+	}
+	
+	@Benchmark
+	public long withIndex() throws FunctionalException
+	{
+		return m_array.withIndex().inject(0L, Functions.SUM_PAIRS);
+	}
+	
+	@Benchmark
+	public long withIndexStream()
+	{
+		return IntStream.range(0, size)
+			.mapToObj(i -> new AbstractMap.SimpleImmutableEntry<Integer, Integer>(i, m_values[i]))
+			.reduce(0L, (sum, entry) -> sum + entry.getKey() + entry.getValue(), Long::sum);
+	}
+}
@@ -0,0 +1,100 @@
+package fr.cantor.functional.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.IterableArray;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Iteration over the sources built from existing data: 
+ * IterableArray and Iterable.wrap() of an ArrayList.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourcesBenchmark
+{
+	@Param({ "1000", "100000" })
+	private int size;
+	
+	private Integer[] m_values;
+	private List<Integer> m_list;
+	
+	@Setup
+	public void setup()
+	{
+		m_values = new Integer[size];
+		for ( int i = 0; i < size; i += 1 )
+		{
+			m_values[i] = i;
+		}
+		m_list = new ArrayList<Integer>(Arrays.asList(m_values));
+	}
+	
+	@Benchmark
+	public long array() throws FunctionalException
+	{
+		return new IterableArray<Integer>(m_values).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long arrayStream()
+	{
+		return Arrays.stream(m_values).reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+	
+	@Benchmark
+	public long arrayMap() throws FunctionalException
+	{
+		return new IterableArray<Integer>(m_values).map(Functions.SQUARE).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long arrayMapStream()
+	{
+		return Arrays.stream(m_values).map(Functions::square).reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+	
+	@Benchmark
+	public long list() throws FunctionalException
+	{
+		return Iterable.wrap(m_list).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long listStream()
+	{
+		return m_list.stream().reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+	
+	@Benchmark
+	public long listMap() throws FunctionalException
+	{
+		return Iterable.wrap(m_list).map(Functions.SQUARE).inject(0L, Functions.SUM);
+	}
+	
+	@Benchmark
+	public long listMapStream()
+	{
+		return m_list.stream().map(Functions::square).reduce(0L, (sum, n) -> sum + n, Long::sum);
+	}
+}
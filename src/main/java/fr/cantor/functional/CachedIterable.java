@@ -0,0 +1,308 @@
+package fr.cantor.functional;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Identity;
+
+/**
+ * An Iterable remembering the elements of another one, so that mappers and
+ * predicates of a chain are only called once whatever the number of
+ * traversals.
+ *
+ * Elements are stored in an array, filled lazily while the first
+ * iterators advance: one iterator may stop early, the next ones will read
+ * what has already been computed and continue from there.
+ * Any number of threads may iterate at the same time, the source iterator
+ * is only advanced under a lock and elements are published afterwards.
+ *
+ * The buffer is only softly referenced, so it can be reclaimed under heap
+ * pressure: the source is then iterated again by the next iterator.
+ * When a maximum number of elements is given, caching stops at this limit
+ * and every traversal computes the following elements again. If the source
+ * splits in parts of known sizes, the parts holding only cached elements are
+ * skipped without being computed; otherwise the source is iterated again
+ * from its start and the cached elements are computed again before being
+ * skipped.
+ *
+ * @param <T> Type to iterate on
+ * @see Iterable#cache()
+ */
+public class CachedIterable<T> extends Iterable<T>
+{
+	private static final int INITIAL_CAPACITY = 16;
+	/**
+	 * Number of parts the source is split in to skip the cached elements:
+	 * at most a part of the source is computed again before the first
+	 * element that is not cached
+	 */
+	private static final int OVERFLOW_PARTS = 64;
+	
+	private final Iterable<T> m_source;
+	private final int m_nMaxElements;
+	private volatile SoftReference<Buffer<T>> m_buffer = new SoftReference<Buffer<T>>(null);
+	
+	CachedIterable(Iterable<T> source, int nMaxElements)
+	{
+		if ( nMaxElements < 0 )
+		{
+			throw new IllegalArgumentException("Maximum number of elements must be positive: " + nMaxElements);
+		}
+		m_source = source;
+		m_nMaxElements = nMaxElements;
+	}
+	
+	/**
+	 * @return the iterable whose elements are cached
+	 */
+	public Iterable<T> getSource()
+	{
+		return m_source;
+	}
+	
+	/**
+	 * @return true if every element of the source is currently cached
+	 */
+	public boolean isComplete()
+	{
+		Buffer<T> buffer = m_buffer.get();
+		return buffer != null && buffer.m_bComplete;
+	}
+	
+	public Iterator<T> iterator()
+	{
+		final Buffer<T> buffer = getBuffer();
+		return new Iterator<T>()
+		{
+			private int m_nIndex = 0;
+			private Iterator<T> m_overflow = null;
+			
+			public boolean hasNext()
+			{
+				if ( m_overflow != null )
+				{
+					return m_overflow.hasNext();
+				}
+				if ( buffer.fill(m_nIndex) )
+				{
+					return true;
+				}
+				if ( buffer.m_bComplete )
+				{
+					return false;
+				}
+				// The cache is full: recompute what follows it
+				m_overflow = skip(m_nIndex);
+				return m_overflow.hasNext();
+			}
+			
+			public T next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				if ( m_overflow != null )
+				{
+					m_nIndex += 1;
+					return m_overflow.next();
+				}
+				return buffer.get(m_nIndex++);
+			}
+		};
+	}
+	
+	/**
+	 * @param nIndex number of elements to skip
+	 * @return a new iterator on the source from the given index
+	 */
+	private Iterator<T> skip(int nIndex)
+	{
+		Iterable<T> rest = m_source;
+		List<Iterable<T>> parts = m_source.split(OVERFLOW_PARTS);
+		if ( parts != null )
+		{
+			int nPart = 0;
+			for ( ; nPart < parts.size() - 1; nPart += 1 )
+			{
+				int size = parts.get(nPart).size();
+				if ( size < 0 || size > nIndex )
+				{
+					break;
+				}
+				nIndex -= size;
+			}
+			if ( nPart > 0 )
+			{
+				rest = wrap(new ArrayList<java.lang.Iterable<T>>(parts.subList(nPart, parts.size()))).flatMap(new Identity<java.lang.Iterable<T>>());
+			}
+		}
+		Iterator<T> iterator = rest.iterator();
+		for ( int i = 0; i < nIndex && iterator.hasNext(); i += 1 )
+		{
+			iterator.next();
+		}
+		return iterator;
+	}
+	
+	/**
+	 * Directly loops on the cached elements once they are all known
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		Buffer<T> buffer = m_buffer.get();
+		if ( buffer == null || !buffer.m_bComplete )
+		{
+			return super.push(sink);
+		}
+		return buffer.slice(0, buffer.m_count).push(sink);
+	}
+	
+	@Override
+	public int size()
+	{
+		Buffer<T> buffer = m_buffer.get();
+		if ( buffer != null && buffer.m_bComplete )
+		{
+			return buffer.m_count;
+		}
+		return m_source.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		int size = size();
+		return ( size >= 0 ) ? size : m_source.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return m_source.characteristics() | ( isComplete() ? SIZED : 0 );
+	}
+	
+	/**
+	 * Splits the cached elements once they are all known,
+	 * otherwise splits the source without caching its parts
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		Buffer<T> buffer = m_buffer.get();
+		if ( buffer == null || !buffer.m_bComplete )
+		{
+			return m_source.split(nParts);
+		}
+		return buffer.slice(0, buffer.m_count).split(nParts);
+	}
+	
+	/**
+	 * @return the current buffer, or a new one if none was created yet or
+	 *         if it was reclaimed
+	 */
+	private Buffer<T> getBuffer()
+	{
+		Buffer<T> buffer = m_buffer.get();
+		if ( buffer == null )
+		{
+			synchronized ( this )
+			{
+				buffer = m_buffer.get();
+				if ( buffer == null )
+				{
+					buffer = new Buffer<T>(m_source, m_nMaxElements);
+					m_buffer = new SoftReference<Buffer<T>>(buffer);
+				}
+			}
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Cached elements with the source iterator computing the next ones.
+	 * Elements are written before m_count, so a reader seeing an index
+	 * below m_count also sees the element and the array holding it.
+	 */
+	private static class Buffer<T>
+	{
+		private final int m_nMaxElements;
+		private Iterator<T> m_source;
+		private volatile Object[] m_values;
+		private volatile int m_count = 0;
+		private volatile boolean m_bComplete = false;
+		
+		public Buffer(Iterable<T> source, int nMaxElements)
+		{
+			m_source = source.iterator();
+			m_nMaxElements = nMaxElements;
+			int size = source.size();
+			m_values = new Object[size >= 0 ? Math.min(size, nMaxElements) : Math.min(INITIAL_CAPACITY, nMaxElements)];
+		}
+		
+		/**
+		 * Computes elements until the given index
+		 * @param nIndex index of the element to read
+		 * @return true if this element is cached, false if there is no such
+		 *         element or if the cache is full
+		 */
+		public boolean fill(int nIndex)
+		{
+			if ( nIndex < m_count )
+			{
+				return true;
+			}
+			synchronized ( this )
+			{
+				while ( m_count <= nIndex && m_source != null )
+				{
+					if ( m_count >= m_nMaxElements )
+					{
+						// Stop caching, iterators will use their own source iterator
+						m_source = null;
+					}
+					else if ( !m_source.hasNext() )
+					{
+						m_bComplete = true;
+						m_source = null;
+					}
+					else
+					{
+						add(m_source.next());
+					}
+				}
+				return nIndex < m_count;
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		public T get(int nIndex)
+		{
+			return (T) m_values[nIndex];
+		}
+		
+		@SuppressWarnings("unchecked")
+		public IterableArray<T> slice(int nBegin, int nEnd)
+		{
+			return new IterableArray<T>((T[]) m_values, nBegin, nEnd);
+		}
+		
+		private void add(T t)
+		{
+			Object[] values = m_values;
+			if ( m_count == values.length )
+			{
+				int capacity = (int) Math.min((long) m_nMaxElements, Math.max(INITIAL_CAPACITY, values.length * 2L));
+				Object[] grown = new Object[capacity];
+				System.arraycopy(values, 0, grown, 0, m_count);
+				m_values = values = grown;
+			}
+			values[m_count] = t;
+			m_count += 1;
+		}
+	}
+}
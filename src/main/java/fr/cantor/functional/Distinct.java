@@ -0,0 +1,83 @@
+package fr.cantor.functional;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.predicates.Predicate1;
+
+/**
+ * Drops the elements of a source equal to one already returned.
+ * Each iteration selects the elements with a new predicate: when the
+ * source is SORTED, duplicates are consecutive and the predicate only 
+ * remembers the previous element, otherwise it remembers every element
+ * in a set.
+ * 
+ * @see Iterable#distinct()
+ */
+class Distinct<T> extends Iterable<T>
+{
+	private Iterable<T> m_source;
+	
+	Distinct(Iterable<T> source)
+	{
+		m_source = source;
+	}
+	
+	public Iterator<T> iterator()
+	{
+		return m_source.select(newFilter()).iterator();
+	}
+	
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return m_source.select(newFilter()).push(sink);
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_source.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return ( m_source.characteristics() & (ORDERED | SORTED) ) | DISTINCT;
+	}
+	
+	/**
+	 * @return a predicate keeping the first occurrence of each element
+	 */
+	private Predicate1<T> newFilter()
+	{
+		if ( m_source.hasCharacteristics(SORTED) )
+		{
+			return new Predicate1<T>()
+			{
+				private boolean m_bFirst = true;
+				private T m_previous;
+				
+				public Boolean call(T t)
+				{
+					if ( !m_bFirst && ( t == m_previous || ( t != null && t.equals(m_previous) ) ) )
+					{
+						return false;
+					}
+					m_bFirst = false;
+					m_previous = t;
+					return true;
+				}
+			};
+		}
+		final Set<T> seen = new HashSet<T>();
+		return new Predicate1<T>()
+		{
+			public Boolean call(T t)
+			{
+				return seen.add(t);
+			}
+		};
+	}
+}
@@ -4,6 +4,7 @@ import java.util.NoSuchElementException;
 
 import fr.cantor.functional.exceptions.FunctionalException;
 import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.procedures.Procedure1;
 
 /**
  * Abstract class to implement the Iterator interface
@@ -11,13 +12,14 @@ import fr.cantor.functional.exceptions.FunctionalRuntimeException;
  * - moveNext() moves the cursor to next element 
  *   and returns false if it could not move
  * - getCurrent() returns current element under cursor
+ * tryAdvance() calls them directly, without wrapping their exceptions.
  */
 public abstract class EasierIterator<T> extends Iterator<T>
 {
 	protected abstract boolean moveNext() throws FunctionalException;
-	
+
 	protected abstract T getCurrent() throws FunctionalException;
-	
+
 	public boolean hasNext()
 	{
 		try
@@ -31,7 +33,7 @@ public abstract class EasierIterator<T> extends Iterator<T>
 		} 
 		catch ( Exception e )
 		{
-			throw new FunctionalRuntimeException(e);
+			throw FunctionalRuntimeException.wrap(e);
 		}
 	}
 
@@ -49,8 +51,21 @@ public abstract class EasierIterator<T> extends Iterator<T>
 		}
 		catch ( FunctionalException e )
 		{
-			throw new FunctionalRuntimeException(e);
+			throw FunctionalRuntimeException.wrap(e);
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Procedure1<T> procedure) throws FunctionalException
+	{
+		advance();
+		m_bShouldMoveToNext = true;
+		if ( !m_bHasNext )
+		{
+			return false;
 		}
+		procedure.call(getCurrent());
+		return true;
 	}
 
 	private boolean m_bShouldMoveToNext = true;
@@ -0,0 +1,199 @@
+package fr.cantor.functional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
+/**
+ * Expands every element of a source into the elements of an inner Iterable.
+ * Inner Iterables are only created when the previous one has been read, and
+ * read as they are: ours push their elements directly, the others are
+ * iterated without the SynchronizedIterator added by wrap().
+ *
+ * Splitting splits the source, so the threads of ConcurrentIterable expand
+ * different elements of the source. When the source cannot be split, they
+ * share its iterator and only take the elements of the source under the lock.
+ *
+ * @param <S>
+ *            Type of the elements of the source
+ * @param <T>
+ *            Type of the elements of the inner Iterables
+ * @see Iterable#flatMap(Function1)
+ * @see Iterable#concat(java.lang.Iterable...)
+ */
+public class FlatMap<S, T> extends Iterable<T>
+{
+	private Iterable<S> m_source;
+	private Function1<java.lang.Iterable<T>, S> m_mapper;
+	
+	/**
+	 * @param mapper returns the inner Iterable of an element of the source,
+	 *               or null if it has no element
+	 */
+	FlatMap(Iterable<S> source, Function1<java.lang.Iterable<T>, S> mapper)
+	{
+		m_source = source;
+		m_mapper = mapper;
+	}
+	
+	/**
+	 * @return the Iterable providing the elements to expand
+	 */
+	public Iterable<S> getSource()
+	{
+		return m_source;
+	}
+	
+	/**
+	 * Builds a sink which expands the elements of the source before pushing
+	 * them to another sink. Used to expand elements taken from the source
+	 * by another mean than push(), like the workers of ConcurrentIterable.
+	 *
+	 * @param sink
+	 *            Sink receiving the elements of the inner Iterables
+	 * @return a Sink receiving the elements of the source
+	 */
+	public Sink<S> wrap(final Sink<T> sink)
+	{
+		return new Sink<S>()
+		{
+			public boolean accept(S s) throws FunctionalException
+			{
+				java.lang.Iterable<T> inner = m_mapper.call(s);
+				if ( inner == null )
+				{
+					return true;
+				}
+				if ( inner instanceof Iterable )
+				{
+					return ((Iterable<T>) inner).push(sink);
+				}
+				for ( T t : inner )
+				{
+					if ( !sink.accept(t) )
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+	
+	public Iterator<T> iterator()
+	{
+		final Iterator<S> it = m_source.iterator();
+		return new Iterator<T>()
+		{
+			// Iterator of the current inner Iterable, null before the first one
+			private java.util.Iterator<T> m_inner;
+			
+			// Starts the inner Iterable of an element of the source
+			private final Procedure1<S> m_expand = new Procedure1<S>()
+			{
+				public Void call(S s) throws FunctionalException
+				{
+					java.lang.Iterable<T> inner = m_mapper.call(s);
+					m_inner = ( inner == null ) ? null : inner.iterator();
+					return null;
+				}
+			};
+			
+			public boolean hasNext()
+			{
+				try
+				{
+					return advance();
+				}
+				catch ( FunctionalException e )
+				{
+					throw FunctionalRuntimeException.wrap(e);
+				}
+			}
+			
+			/**
+			 * Expands the source without wrapping the exceptions of the mapper
+			 */
+			@Override
+			public boolean tryAdvance(Procedure1<T> procedure) throws FunctionalException
+			{
+				if ( !advance() )
+				{
+					return false;
+				}
+				procedure.call(m_inner.next());
+				return true;
+			}
+			
+			public T next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				return m_inner.next();
+			}
+			
+			/**
+			 * Skips the inner Iterables without elements
+			 * @return true if the current inner Iterable has an element left
+			 */
+			private boolean advance() throws FunctionalException
+			{
+				while ( m_inner == null || !m_inner.hasNext() )
+				{
+					m_inner = null;
+					if ( !it.tryAdvance(m_expand) )
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Pushes the elements of every inner Iterable, stopping the source
+	 * as soon as the sink stops
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return m_source.push(wrap(sink));
+	}
+	
+	/**
+	 * Inner Iterables follow the order of the source, nothing else is known
+	 */
+	@Override
+	public int characteristics()
+	{
+		return m_source.characteristics() & ORDERED;
+	}
+	
+	/**
+	 * @return the expansion of each part of the source,
+	 *         or null if the source cannot be split
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		List<Iterable<S>> parts = m_source.split(nParts);
+		if ( parts == null )
+		{
+			return null;
+		}
+		List<Iterable<T>> flatMaps = new ArrayList<Iterable<T>>(parts.size());
+		for ( Iterable<S> part : parts )
+		{
+			flatMaps.add(new FlatMap<S, T>(part, m_mapper));
+		}
+		return flatMaps;
+	}
+}
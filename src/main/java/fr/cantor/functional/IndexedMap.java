@@ -0,0 +1,123 @@
+package fr.cantor.functional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.IndexedFunction1;
+
+/**
+ * Transforms every element of a source with its index.
+ * Each iteration counts from the index of its first element, so that
+ * iterating twice gives the same indexes and parts of a split source
+ * start counting at their offset in the source.
+ * 
+ * @see Iterable#mapWithIndex(IndexedFunction1)
+ */
+class IndexedMap<V, T> extends Iterable<V>
+{
+	private Iterable<T> m_source;
+	private IndexedFunction1<V, T> m_mapper;
+	private int m_nOffset;
+	private int m_nCharacteristics;
+	
+	/**
+	 * @param nOffset index of the first element of the source
+	 * @param nCharacteristics characteristics the mapper guarantees, 
+	 *        added to ORDERED and SIZED kept from the source
+	 */
+	IndexedMap(Iterable<T> source, IndexedFunction1<V, T> mapper, int nOffset, int nCharacteristics)
+	{
+		m_source = source;
+		m_mapper = mapper;
+		m_nOffset = nOffset;
+		m_nCharacteristics = nCharacteristics;
+	}
+	
+	public Iterator<V> iterator()
+	{
+		final Iterator<T> it = m_source.iterator();
+		return new Iterator<V>()
+		{
+			private int m_nIndex = m_nOffset;
+			
+			public boolean hasNext()
+			{
+				return it.hasNext();
+			}
+			
+			public V next()
+			{
+				T next = it.next();
+				try
+				{
+					return m_mapper.call(m_nIndex++, next);
+				}
+				catch ( FunctionalException e )
+				{
+					throw FunctionalRuntimeException.wrap(e);
+				}
+			}
+		};
+	}
+	
+	@Override
+	public boolean push(final Sink<V> sink) throws FunctionalException
+	{
+		return m_source.push(new Sink<T>()
+		{
+			private int m_nIndex = m_nOffset;
+			
+			public boolean accept(T t) throws FunctionalException
+			{
+				return sink.accept(m_mapper.call(m_nIndex++, t));
+			}
+		});
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_source.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_source.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return ( m_source.characteristics() & (ORDERED | SIZED) ) | m_nCharacteristics;
+	}
+	
+	/**
+	 * Splits the source if the size of every part is known,
+	 * to compute the index of their first element
+	 */
+	@Override
+	public List<Iterable<V>> split(int nParts)
+	{
+		List<Iterable<T>> parts = m_source.split(nParts);
+		if ( parts == null )
+		{
+			return null;
+		}
+		List<Iterable<V>> mapped = new ArrayList<Iterable<V>>(parts.size());
+		int nOffset = m_nOffset;
+		for ( Iterable<T> part : parts )
+		{
+			int size = part.size();
+			if ( size < 0 )
+			{
+				return null;
+			}
+			mapped.add(new IndexedMap<V, T>(part, m_mapper, nOffset, m_nCharacteristics));
+			nOffset += size;
+		}
+		return mapped;
+	}
+}
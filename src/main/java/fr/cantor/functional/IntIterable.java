@@ -0,0 +1,277 @@
+package fr.cantor.functional;
+
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.IntFunction1;
+import fr.cantor.functional.functions.IntFunction2;
+import fr.cantor.functional.functions.predicates.IntPredicate1;
+import fr.cantor.functional.functions.procedures.IntProcedure1;
+
+/**
+ * A primitive specialization of Iterable for ints.
+ * Every operation works on int values so that a pipeline like 
+ * range.select(predicate).inject(0, new IntegerAdd()) does not allocate
+ * anything per element.
+ * Use boxed() to go back to an Iterable&lt;Integer&gt;.
+ */
+public abstract class IntIterable
+{
+	/**
+	 * The only method to implement.
+	 * @see IntIterator
+	 */
+	public abstract IntIterator iterator();
+	
+	/**
+	 * Computes an int by processing every elements in the iterator.
+	 * 
+	 * @param value
+	 *            initial value to inject
+	 * @param injecter
+	 *            Functor that will apply the injection on each element
+	 * @return the injected value modified by the injecter called for every
+	 *         elements
+	 * @throws FunctionalException
+	 */
+	public int inject(int value, IntFunction2 injecter) throws FunctionalException
+	{
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			value = injecter.call(value, it.nextInt());
+		}
+		return value;
+	}
+
+	/**
+	 * @return the sum of every elements
+	 * @throws FunctionalException
+	 */
+	public int sum() throws FunctionalException
+	{
+		int sum = 0;
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			sum += it.nextInt();
+		}
+		return sum;
+	}
+	
+	/**
+	 * @return the number of elements
+	 */
+	public int count()
+	{
+		int count = 0;
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			it.nextInt();
+			count += 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Calls procedure for each element in the iterator
+	 * 
+	 * @param procedure
+	 *            Functor that will process each element
+	 * @throws FunctionalException
+	 */
+	public void each(IntProcedure1 procedure) throws FunctionalException
+	{
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			procedure.call(it.nextInt());
+		}
+	}
+	
+	/**
+	 * Transform every elements in the iterator
+	 * 
+	 * @param mapper
+	 *            Functor that will transform each element of the iterator
+	 * @return an IntIterable containing the transformed elements
+	 */
+	public IntIterable map(final IntFunction1 mapper)
+	{
+		return new IntIterable()
+		{
+			public IntIterator iterator()
+			{
+				final IntIterator it = IntIterable.this.iterator();
+				return new IntIterator()
+				{
+					public boolean hasNext() { return it.hasNext(); }
+					
+					public int nextInt()
+					{
+						int next = it.nextInt();
+						try
+						{
+							return mapper.call(next);
+						}
+						catch ( FunctionalException e )
+						{
+							// Iterator#next cannot throw :-(
+							throw FunctionalRuntimeException.wrap(e);
+						}
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * Filter an IntIterable to keep only some elements
+	 * @param predicate Predicate that returns true for elements to be kept
+	 * @return an IntIterable containing the retained elements
+	 */
+	public IntIterable select(final IntPredicate1 predicate)
+	{
+		return filter(predicate, true);
+	}
+	
+	/**
+	 * Rejects elements of an IntIterable
+	 * @param predicate Predicate that returns true for elements to be removed
+	 * @return an IntIterable containing the retained elements
+	 */
+	public IntIterable reject(final IntPredicate1 predicate)
+	{
+		return filter(predicate, false);
+	}
+	
+	private IntIterable filter(final IntPredicate1 predicate, final boolean bKeep)
+	{
+		return new IntIterable()
+		{
+			public IntIterator iterator()
+			{
+				final IntIterator it = IntIterable.this.iterator();
+				return new IntIterator()
+				{
+					private boolean m_bShouldMoveToNext = true;
+					private boolean m_bHasNext = false;
+					private int m_nCurrent;
+					
+					public boolean hasNext()
+					{
+						advance();
+						return m_bHasNext;
+					}
+					
+					public int nextInt()
+					{
+						advance();
+						if ( !m_bHasNext )
+						{
+							throw new NoSuchElementException();
+						}
+						m_bShouldMoveToNext = true;
+						return m_nCurrent;
+					}
+					
+					private void advance()
+					{
+						if ( !m_bShouldMoveToNext )
+						{
+							return;
+						}
+						m_bShouldMoveToNext = false;
+						m_bHasNext = false;
+						try
+						{
+							while ( it.hasNext() )
+							{
+								int n = it.nextInt();
+								if ( predicate.call(n) == bKeep )
+								{
+									m_nCurrent = n;
+									m_bHasNext = true;
+									return;
+								}
+							}
+						}
+						catch ( FunctionalException e )
+						{
+							throw FunctionalRuntimeException.wrap(e);
+						}
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * @return every elements of this IntIterable in a new array
+	 */
+	public int[] toArray()
+	{
+		int[] an = new int[16];
+		int count = 0;
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			if ( count == an.length )
+			{
+				int[] anGrown = new int[an.length * 2];
+				System.arraycopy(an, 0, anGrown, 0, count);
+				an = anGrown;
+			}
+			an[count++] = it.nextInt();
+		}
+		if ( count == an.length )
+		{
+			return an;
+		}
+		int[] anResult = new int[count];
+		System.arraycopy(an, 0, anResult, 0, count);
+		return anResult;
+	}
+	
+	/**
+	 * Collects every elements in a compressed bitmap, which costs at most
+	 * 2 bytes per element and supports set operations.
+	 * @return a new IntSet containing the elements of this IntIterable
+	 * @throws FunctionalException
+	 */
+	public IntSet dumpToBitmap() throws FunctionalException
+	{
+		final IntSet set = new IntSet();
+		each(new IntProcedure1()
+		{
+			public void call(int n)
+			{
+				set.add(n);
+			}
+		});
+		return set;
+	}
+	
+	/**
+	 * Bridge back to the boxed world.
+	 * @return an Iterable of Integer containing the elements of this IntIterable
+	 */
+	public Iterable<Integer> boxed()
+	{
+		return new Iterable<Integer>()
+		{
+			public Iterator<Integer> iterator()
+			{
+				final IntIterator it = IntIterable.this.iterator();
+				return new Iterator<Integer>()
+				{
+					public boolean hasNext() { return it.hasNext(); }
+					
+					public Integer next() { return it.nextInt(); }
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,27 @@
+package fr.cantor.functional;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only iterator on primitive ints.
+ * Unlike Iterator&lt;Integer&gt;, nextInt() does not box the returned value.
+ */
+public abstract class IntIterator extends IntIterable
+{
+	public abstract boolean hasNext();
+	
+	/**
+	 * @return the next int of the iteration
+	 * @throws NoSuchElementException if there is no more element
+	 */
+	public abstract int nextInt();
+	
+	/**
+	 * IntIterator is also an IntIterable, like Iterator is an Iterable
+	 * @return this iterator
+	 */
+	public IntIterator iterator()
+	{
+		return this;
+	}
+}
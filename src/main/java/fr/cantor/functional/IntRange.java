@@ -0,0 +1,83 @@
+package fr.cantor.functional;
+
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.IntFunction2;
+
+/**
+ * A primitive version of Range iterating on ints without boxing.
+ * Either from 0 for a specific number of integers, or from a value to another.
+ */
+public class IntRange extends IntIterable
+{
+	private int m_nBegin;
+	private int m_nEnd;
+	
+	/**
+	 * Construct an 0-based index iterator which iterates a given number of times.
+	 * @param nCount Number of times to iterate
+	 */
+	public IntRange(int nCount)
+	{
+		this(0, nCount - 1);
+	}
+	
+	/**
+	 * Construct an index iterator which iterates on a integer range
+	 * @param nStart First index to iterate on (included)
+	 * @param nEnd Last index to iterate on (included)
+	 */
+	public IntRange(int nStart, int nEnd)
+	{
+		m_nBegin = nStart;
+		m_nEnd = nEnd;
+	}
+	
+	public IntIterator iterator()
+	{
+		return new IntIterator()
+		{
+			// long to support a range ending on Integer.MAX_VALUE
+			private long m_nIndex = m_nBegin;
+			
+			public boolean hasNext()
+			{
+				return m_nIndex <= m_nEnd;
+			}
+			
+			public int nextInt()
+			{
+				if ( m_nIndex > m_nEnd )
+				{
+					throw new NoSuchElementException();
+				}
+				return (int) m_nIndex++;
+			}
+		};
+	}
+	
+	/**
+	 * Directly loops on the range instead of using an iterator
+	 */
+	@Override
+	public int inject(int value, IntFunction2 injecter) throws FunctionalException
+	{
+		for ( long n = m_nBegin; n <= m_nEnd; n += 1 )
+		{
+			value = injecter.call(value, (int) n);
+		}
+		return value;
+	}
+	
+	/**
+	 * Computes the count without iterating, like Range.size()
+	 * @return the number of integers, or -1 if there are more than Integer.MAX_VALUE
+	 */
+	@Override
+	public int count()
+	{
+		long count = (long) m_nEnd - m_nBegin + 1;
+		return ( count > Integer.MAX_VALUE ) ? -1 : (int) Math.max(0, count);
+	}
+}
@@ -0,0 +1,737 @@
+package fr.cantor.functional;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.IntFunction2;
+import fr.cantor.functional.functions.procedures.IntProcedure1;
+
+/**
+ * A sorted set of ints stored as a compressed bitmap.
+ *
+ * Like in Roaring bitmaps, ints are grouped by their 16 high bits and every
+ * group is stored in the smallest of two containers: a sorted array of the
+ * 16 low bits while the group has at most 4096 elements, a bitmap of 65536
+ * bits otherwise. A set of survivors of a filtered range costs between 2
+ * bytes per element and 1 bit per possible element, instead of a boxed
+ * Integer in a list.
+ *
+ * Iteration returns the elements in increasing order.
+ * The set can be built by add() or by IntIterable.dumpToBitmap(), then
+ * combined with and(), or() and andNot() which return new sets.
+ * An IntSet is not thread-safe while it is modified.
+ *
+ * @see IntIterable#dumpToBitmap()
+ */
+public class IntSet extends IntIterable
+{
+	/**
+	 * Maximum number of elements of an array container, above which
+	 * a bitmap container is smaller
+	 */
+	static final int ARRAY_MAX_SIZE = 4096;
+	
+	private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+	
+	// Keys of containers, the 16 high bits with the sign bit flipped so that
+	// keys sort like signed ints
+	private char[] m_keys = new char[4];
+	private Container[] m_containers = new Container[4];
+	private int m_countContainers = 0;
+	
+	public IntSet()
+	{
+	}
+	
+	/**
+	 * @param values elements of the new set
+	 */
+	public IntSet(int... values)
+	{
+		for ( int n : values )
+		{
+			add(n);
+		}
+	}
+	
+	/**
+	 * Adds an int to this set.
+	 * Adding elements in increasing order is the fastest.
+	 * @param n the int to add
+	 * @return true if the set did not already contain it
+	 */
+	public boolean add(int n)
+	{
+		char key = key(n);
+		int i = m_countContainers - 1;
+		if ( i < 0 || m_keys[i] != key )
+		{
+			i = find(key);
+			if ( i < 0 )
+			{
+				i = -i - 1;
+				insert(i, key, new ArrayContainer(new char[4], 0));
+			}
+		}
+		Container container = m_containers[i];
+		int count = container.m_count;
+		m_containers[i] = container.add((char) n);
+		return m_containers[i].m_count > count;
+	}
+	
+	/**
+	 * @param n the int to look for
+	 * @return true if this set contains n
+	 */
+	public boolean contains(int n)
+	{
+		int i = find(key(n));
+		return i >= 0 && m_containers[i].contains((char) n);
+	}
+	
+	/**
+	 * @return the number of elements of this set
+	 */
+	public int cardinality()
+	{
+		int count = 0;
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			count += m_containers[i].m_count;
+		}
+		return count;
+	}
+	
+	public boolean isEmpty()
+	{
+		return m_countContainers == 0;
+	}
+	
+	/**
+	 * @param other another set
+	 * @return a new set with elements contained in both sets
+	 */
+	public IntSet and(IntSet other)
+	{
+		IntSet result = new IntSet();
+		int i = 0;
+		int j = 0;
+		while ( i < m_countContainers && j < other.m_countContainers )
+		{
+			if ( m_keys[i] < other.m_keys[j] )
+			{
+				i += 1;
+			}
+			else if ( m_keys[i] > other.m_keys[j] )
+			{
+				j += 1;
+			}
+			else
+			{
+				result.append(m_keys[i], m_containers[i].and(other.m_containers[j]));
+				i += 1;
+				j += 1;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param other another set
+	 * @return a new set with elements contained in any of the sets
+	 */
+	public IntSet or(IntSet other)
+	{
+		IntSet result = new IntSet();
+		int i = 0;
+		int j = 0;
+		while ( i < m_countContainers || j < other.m_countContainers )
+		{
+			if ( j == other.m_countContainers || i < m_countContainers && m_keys[i] < other.m_keys[j] )
+			{
+				result.append(m_keys[i], m_containers[i].copy());
+				i += 1;
+			}
+			else if ( i == m_countContainers || m_keys[i] > other.m_keys[j] )
+			{
+				result.append(other.m_keys[j], other.m_containers[j].copy());
+				j += 1;
+			}
+			else
+			{
+				result.append(m_keys[i], m_containers[i].or(other.m_containers[j]));
+				i += 1;
+				j += 1;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param other another set
+	 * @return a new set with elements of this set not contained in the other
+	 */
+	public IntSet andNot(IntSet other)
+	{
+		IntSet result = new IntSet();
+		int j = 0;
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			while ( j < other.m_countContainers && other.m_keys[j] < m_keys[i] )
+			{
+				j += 1;
+			}
+			if ( j < other.m_countContainers && other.m_keys[j] == m_keys[i] )
+			{
+				result.append(m_keys[i], m_containers[i].andNot(other.m_containers[j]));
+			}
+			else
+			{
+				result.append(m_keys[i], m_containers[i].copy());
+			}
+		}
+		return result;
+	}
+	
+	public IntIterator iterator()
+	{
+		return new IntIterator()
+		{
+			private int m_nContainer = 0;
+			private ContainerIterator m_it = m_countContainers > 0 ? m_containers[0].iterator() : null;
+			
+			public boolean hasNext()
+			{
+				while ( m_it != null && !m_it.hasNext() )
+				{
+					m_nContainer += 1;
+					m_it = m_nContainer < m_countContainers ? m_containers[m_nContainer].iterator() : null;
+				}
+				return m_it != null;
+			}
+			
+			public int nextInt()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				return value(m_keys[m_nContainer], m_it.next());
+			}
+		};
+	}
+	
+	/**
+	 * Directly loops on containers instead of using an iterator
+	 */
+	@Override
+	public int inject(int value, IntFunction2 injecter) throws FunctionalException
+	{
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			ContainerIterator it = m_containers[i].iterator();
+			while ( it.hasNext() )
+			{
+				value = injecter.call(value, value(m_keys[i], it.next()));
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Directly loops on containers instead of using an iterator
+	 */
+	@Override
+	public void each(IntProcedure1 procedure) throws FunctionalException
+	{
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			ContainerIterator it = m_containers[i].iterator();
+			while ( it.hasNext() )
+			{
+				procedure.call(value(m_keys[i], it.next()));
+			}
+		}
+	}
+	
+	@Override
+	public int count()
+	{
+		return cardinality();
+	}
+	
+	@Override
+	public int[] toArray()
+	{
+		int[] an = new int[cardinality()];
+		int count = 0;
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			ContainerIterator it = m_containers[i].iterator();
+			while ( it.hasNext() )
+			{
+				an[count++] = value(m_keys[i], it.next());
+			}
+		}
+		return an;
+	}
+	
+	/**
+	 * The set itself is already compressed
+	 * @return this set
+	 */
+	@Override
+	public IntSet dumpToBitmap()
+	{
+		return this;
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if ( !(obj instanceof IntSet) )
+		{
+			return false;
+		}
+		IntSet other = (IntSet) obj;
+		if ( m_countContainers != other.m_countContainers )
+		{
+			return false;
+		}
+		for ( int i = 0; i < m_countContainers; i += 1 )
+		{
+			if ( m_keys[i] != other.m_keys[i] || !m_containers[i].sameElements(other.m_containers[i]) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		int hash = 0;
+		IntIterator it = iterator();
+		while ( it.hasNext() )
+		{
+			hash = 31 * hash + it.nextInt();
+		}
+		return hash;
+	}
+	
+	private static char key(int n)
+	{
+		return (char) ((n >>> 16) ^ 0x8000);
+	}
+	
+	private static int value(char key, char low)
+	{
+		return ((key ^ 0x8000) << 16) | low;
+	}
+	
+	/**
+	 * @return the index of the container for key, or (-(insertion point) - 1)
+	 */
+	private int find(char key)
+	{
+		return Arrays.binarySearch(m_keys, 0, m_countContainers, key);
+	}
+	
+	private void insert(int i, char key, Container container)
+	{
+		if ( m_countContainers == m_keys.length )
+		{
+			m_keys = Arrays.copyOf(m_keys, m_countContainers * 2);
+			m_containers = Arrays.copyOf(m_containers, m_countContainers * 2);
+		}
+		System.arraycopy(m_keys, i, m_keys, i + 1, m_countContainers - i);
+		System.arraycopy(m_containers, i, m_containers, i + 1, m_countContainers - i);
+		m_keys[i] = key;
+		m_containers[i] = container;
+		m_countContainers += 1;
+	}
+	
+	/**
+	 * Adds a container after the last one, unless it is empty
+	 */
+	private void append(char key, Container container)
+	{
+		if ( container != null && container.m_count > 0 )
+		{
+			insert(m_countContainers, key, container);
+		}
+	}
+	
+	/**
+	 * The 16 low bits of the elements sharing the same 16 high bits.
+	 * Operations may return a new container of another kind.
+	 */
+	private static abstract class Container
+	{
+		protected int m_count;
+		
+		public abstract Container add(char low);
+		
+		public abstract boolean contains(char low);
+		
+		public abstract Container and(Container other);
+		
+		public abstract Container or(Container other);
+		
+		public abstract Container andNot(Container other);
+		
+		public abstract Container copy();
+		
+		public abstract ContainerIterator iterator();
+		
+		public boolean sameElements(Container other)
+		{
+			if ( m_count != other.m_count )
+			{
+				return false;
+			}
+			ContainerIterator it = iterator();
+			ContainerIterator itOther = other.iterator();
+			while ( it.hasNext() )
+			{
+				if ( it.next() != itOther.next() )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	private interface ContainerIterator
+	{
+		boolean hasNext();
+		
+		char next();
+	}
+	
+	/**
+	 * Sorted low bits, for containers of at most ARRAY_MAX_SIZE elements
+	 */
+	private static class ArrayContainer extends Container
+	{
+		private char[] m_values;
+		
+		public ArrayContainer(char[] values, int count)
+		{
+			m_values = values;
+			m_count = count;
+		}
+		
+		public Container add(char low)
+		{
+			int i;
+			if ( m_count == 0 || m_values[m_count - 1] < low )
+			{
+				i = m_count;
+			}
+			else
+			{
+				i = Arrays.binarySearch(m_values, 0, m_count, low);
+				if ( i >= 0 )
+				{
+					return this;
+				}
+				i = -i - 1;
+			}
+			if ( m_count == ARRAY_MAX_SIZE )
+			{
+				return toBitmap().add(low);
+			}
+			if ( m_count == m_values.length )
+			{
+				m_values = Arrays.copyOf(m_values, Math.min(ARRAY_MAX_SIZE, m_count * 2));
+			}
+			System.arraycopy(m_values, i, m_values, i + 1, m_count - i);
+			m_values[i] = low;
+			m_count += 1;
+			return this;
+		}
+		
+		public boolean contains(char low)
+		{
+			return Arrays.binarySearch(m_values, 0, m_count, low) >= 0;
+		}
+		
+		public Container and(Container other)
+		{
+			char[] values = new char[m_count];
+			int count = 0;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				int j = 0;
+				for ( int i = 0; i < m_count && j < array.m_count; )
+				{
+					if ( m_values[i] < array.m_values[j] )
+					{
+						i += 1;
+					}
+					else if ( m_values[i] > array.m_values[j] )
+					{
+						j += 1;
+					}
+					else
+					{
+						values[count++] = m_values[i];
+						i += 1;
+						j += 1;
+					}
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < m_count; i += 1 )
+				{
+					if ( other.contains(m_values[i]) )
+					{
+						values[count++] = m_values[i];
+					}
+				}
+			}
+			return new ArrayContainer(values, count);
+		}
+		
+		public Container or(Container other)
+		{
+			if ( other instanceof BitmapContainer )
+			{
+				return other.or(this);
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			char[] values = new char[m_count + array.m_count];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while ( i < m_count || j < array.m_count )
+			{
+				if ( j == array.m_count || i < m_count && m_values[i] < array.m_values[j] )
+				{
+					values[count++] = m_values[i++];
+				}
+				else if ( i == m_count || m_values[i] > array.m_values[j] )
+				{
+					values[count++] = array.m_values[j++];
+				}
+				else
+				{
+					values[count++] = m_values[i];
+					i += 1;
+					j += 1;
+				}
+			}
+			ArrayContainer result = new ArrayContainer(values, count);
+			return count > ARRAY_MAX_SIZE ? result.toBitmap() : result;
+		}
+		
+		public Container andNot(Container other)
+		{
+			char[] values = new char[m_count];
+			int count = 0;
+			for ( int i = 0; i < m_count; i += 1 )
+			{
+				if ( !other.contains(m_values[i]) )
+				{
+					values[count++] = m_values[i];
+				}
+			}
+			return new ArrayContainer(values, count);
+		}
+		
+		public Container copy()
+		{
+			return new ArrayContainer(Arrays.copyOf(m_values, m_count), m_count);
+		}
+		
+		public ContainerIterator iterator()
+		{
+			return new ContainerIterator()
+			{
+				private int m_nIndex = 0;
+				
+				public boolean hasNext()
+				{
+					return m_nIndex < m_count;
+				}
+				
+				public char next()
+				{
+					return m_values[m_nIndex++];
+				}
+			};
+		}
+		
+		private BitmapContainer toBitmap()
+		{
+			long[] words = new long[BITMAP_WORDS];
+			for ( int i = 0; i < m_count; i += 1 )
+			{
+				words[m_values[i] >>> 6] |= 1L << m_values[i];
+			}
+			return new BitmapContainer(words, m_count);
+		}
+	}
+	
+	/**
+	 * One bit for each of the 65536 possible low bits,
+	 * for containers of more than ARRAY_MAX_SIZE elements
+	 */
+	private static class BitmapContainer extends Container
+	{
+		private long[] m_words;
+		
+		public BitmapContainer(long[] words, int count)
+		{
+			m_words = words;
+			m_count = count;
+		}
+		
+		public Container add(char low)
+		{
+			long word = m_words[low >>> 6];
+			long wordNew = word | (1L << low);
+			if ( word != wordNew )
+			{
+				m_words[low >>> 6] = wordNew;
+				m_count += 1;
+			}
+			return this;
+		}
+		
+		public boolean contains(char low)
+		{
+			return (m_words[low >>> 6] & (1L << low)) != 0;
+		}
+		
+		public Container and(Container other)
+		{
+			if ( other instanceof ArrayContainer )
+			{
+				return other.and(this);
+			}
+			long[] words = new long[BITMAP_WORDS];
+			long[] wordsOther = ((BitmapContainer) other).m_words;
+			for ( int i = 0; i < BITMAP_WORDS; i += 1 )
+			{
+				words[i] = m_words[i] & wordsOther[i];
+			}
+			return compact(words);
+		}
+		
+		public Container or(Container other)
+		{
+			long[] words = m_words.clone();
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.m_count; i += 1 )
+				{
+					words[array.m_values[i] >>> 6] |= 1L << array.m_values[i];
+				}
+			}
+			else
+			{
+				long[] wordsOther = ((BitmapContainer) other).m_words;
+				for ( int i = 0; i < BITMAP_WORDS; i += 1 )
+				{
+					words[i] |= wordsOther[i];
+				}
+			}
+			return compact(words);
+		}
+		
+		public Container andNot(Container other)
+		{
+			long[] words = m_words.clone();
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.m_count; i += 1 )
+				{
+					words[array.m_values[i] >>> 6] &= ~(1L << array.m_values[i]);
+				}
+			}
+			else
+			{
+				long[] wordsOther = ((BitmapContainer) other).m_words;
+				for ( int i = 0; i < BITMAP_WORDS; i += 1 )
+				{
+					words[i] &= ~wordsOther[i];
+				}
+			}
+			return compact(words);
+		}
+		
+		public Container copy()
+		{
+			return new BitmapContainer(m_words.clone(), m_count);
+		}
+		
+		public ContainerIterator iterator()
+		{
+			return new ContainerIterator()
+			{
+				private int m_nWord = 0;
+				private long m_word = m_words[0];
+				
+				public boolean hasNext()
+				{
+					while ( m_word == 0 )
+					{
+						if ( ++m_nWord == BITMAP_WORDS )
+						{
+							m_word = 0;
+							m_nWord = BITMAP_WORDS - 1;
+							return false;
+						}
+						m_word = m_words[m_nWord];
+					}
+					return true;
+				}
+				
+				public char next()
+				{
+					hasNext();
+					char low = (char) ((m_nWord << 6) + Long.numberOfTrailingZeros(m_word));
+					m_word &= m_word - 1;
+					return low;
+				}
+			};
+		}
+		
+		/**
+		 * @return a container for these bits, an array one if it is smaller
+		 */
+		private static Container compact(long[] words)
+		{
+			int count = 0;
+			for ( long word : words )
+			{
+				count += Long.bitCount(word);
+			}
+			if ( count > ARRAY_MAX_SIZE )
+			{
+				return new BitmapContainer(words, count);
+			}
+			char[] values = new char[count];
+			int i = 0;
+			for ( int nWord = 0; nWord < BITMAP_WORDS; nWord += 1 )
+			{
+				long word = words[nWord];
+				while ( word != 0 )
+				{
+					values[i++] = (char) ((nWord << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, count);
+		}
+	}
+}
@@ -1,16 +1,43 @@
 package fr.cantor.functional;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import fr.cantor.functional.concurrent.ConcurrentIterable;
+import fr.cantor.functional.concurrent.DefaultExecutor;
+import fr.cantor.functional.concurrent.IterablePublisher;
+import fr.cantor.functional.concurrent.PipelinedIterable;
+import fr.cantor.functional.concurrent.PublisherIterable;
 import fr.cantor.functional.exceptions.FunctionalException;
 import fr.cantor.functional.exceptions.FunctionalRuntimeException;
 import fr.cantor.functional.functions.Function1;
 import fr.cantor.functional.functions.Function2;
-import fr.cantor.functional.functions.predicates.NotPredicate1;
+import fr.cantor.functional.functions.Identity;
+import fr.cantor.functional.functions.IndexedFunction1;
+import fr.cantor.functional.functions.ToIntFunction1;
 import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.IndexedProcedure1;
 import fr.cantor.functional.functions.procedures.Procedure1;
+import fr.cantor.functional.io.Encoder;
+import fr.cantor.functional.io.EncodingSink;
+import fr.cantor.functional.io.FileOutput;
+import fr.cantor.functional.metrics.MonitoredIterable;
+import fr.cantor.functional.metrics.PipelineMetrics;
 import fr.cantor.functional.nuple.Pair;
 
 /**
@@ -22,6 +49,30 @@ import fr.cantor.functional.nuple.Pair;
  */
 public abstract class Iterable<T> implements java.lang.Iterable<T>
 {	
+	/**
+	 * The elements come in a meaningful order
+	 * @see #characteristics()
+	 */
+	public static final int ORDERED = Spliterator.ORDERED;
+	
+	/**
+	 * No two elements are equal
+	 * @see #characteristics()
+	 */
+	public static final int DISTINCT = Spliterator.DISTINCT;
+	
+	/**
+	 * The elements come in their natural order
+	 * @see #characteristics()
+	 */
+	public static final int SORTED = Spliterator.SORTED;
+	
+	/**
+	 * size() is known
+	 * @see #characteristics()
+	 */
+	public static final int SIZED = Spliterator.SIZED;
+	
 	/**
 	 * Create an Iterable from an existing java.lang.Iterable
 	 * 
@@ -29,19 +80,125 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 *            Type to iterate on
 	 * @param iterable
 	 *            existing java.lang.Iterable
-	 * @return a new Iterable object wrapping the iterable parameter
+	 * @return a new Iterable object wrapping the iterable parameter,
+	 *         an IterableList for a random access list, or the parameter
+	 *         itself if it already is an Iterable of ours. Changes of the
+	 *         wrapped collection are seen by the following iterations.
 	 */
 	public static <T> Iterable<T> wrap(final java.lang.Iterable<T> iterable)
 	{
+		if ( iterable instanceof Iterable )
+		{
+			return (Iterable<T>) iterable;
+		}
+		if ( iterable instanceof List && iterable instanceof RandomAccess )
+		{
+			return new IterableList<T>((List<T>) iterable, 0, -1);
+		}
 		return new Iterable<T>()
 		{
 			public Iterator<T> iterator()
 			{
 				return new SynchronizedIterator<T>(Iterator.wrap(iterable.iterator()));
 			}
+			
+			/**
+			 * Sets are distinct, and sorted sets without comparator are sorted
+			 */
+			@Override
+			public int characteristics()
+			{
+				int nCharacteristics = super.characteristics();
+				if ( iterable instanceof Set )
+				{
+					nCharacteristics |= DISTINCT;
+				}
+				if ( iterable instanceof SortedSet && ((SortedSet<T>) iterable).comparator() == null )
+				{
+					nCharacteristics |= SORTED;
+				}
+				return nCharacteristics;
+			}
+		};
+	}
+	
+	/**
+	 * Create an Iterable from a Stream. Like the stream, it can only 
+	 * be iterated once.
+	 * 
+	 * @param <T>
+	 *            Type to iterate on
+	 * @param stream
+	 *            stream providing the elements
+	 * @return a new Iterable on the elements of the stream
+	 */
+	public static <T> Iterable<T> from(final Stream<T> stream)
+	{
+		return new Iterable<T>()
+		{
+			public Iterator<T> iterator()
+			{
+				return Iterator.wrap(stream.iterator());
+			}
 		};
 	}
 	
+	/**
+	 * Create an Iterable from a reactive publisher. Each iteration subscribes
+	 * again, with at most PipelinedIterable.DEFAULT_CAPACITY elements requested
+	 * ahead of the iteration.
+	 * 
+	 * @param <T>
+	 *            Type to iterate on
+	 * @param publisher
+	 *            publisher providing the elements
+	 * @return a new Iterable on the elements of the publisher
+	 * @see PublisherIterable
+	 */
+	public static <T> Iterable<T> from(Flow.Publisher<T> publisher)
+	{
+		return new PublisherIterable<T>(publisher, PipelinedIterable.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Create an Iterable from a reactive publisher
+	 * 
+	 * @param <T>
+	 *            Type to iterate on
+	 * @param publisher
+	 *            publisher providing the elements
+	 * @param nCapacity
+	 *            maximum number of elements requested ahead of the iteration
+	 * @return a new Iterable on the elements of the publisher
+	 * @see PublisherIterable
+	 */
+	public static <T> Iterable<T> from(Flow.Publisher<T> publisher, int nCapacity)
+	{
+		return new PublisherIterable<T>(publisher, nCapacity);
+	}
+	
+	/**
+	 * Chains Iterables one after the other, without copying their elements.
+	 * The result can be split between the given Iterables. The Iterables are
+	 * copied in a list: the varargs array itself is never kept.
+	 * 
+	 * @param <T>
+	 *            Type to iterate on
+	 * @param iterables
+	 *            Iterables to chain
+	 * @return a new Iterable on the elements of every Iterable, in order
+	 */
+	@SafeVarargs
+	public static <T> Iterable<T> concat(java.lang.Iterable<T>... iterables)
+	{
+		List<java.lang.Iterable<T>> list = new ArrayList<java.lang.Iterable<T>>(iterables.length);
+		for ( java.lang.Iterable<T> iterable : iterables )
+		{
+			list.add(iterable);
+		}
+		return wrap(list).flatMap(new Identity<java.lang.Iterable<T>>());
+	}
+	
 	/**
 	 * This methods is used in order to efficiently wrap an java.lang.Iterable
 	 * that would also be of our class
@@ -65,10 +222,130 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public abstract Iterator<T> iterator();
 	
+	/**
+	 * @return the exact number of elements of this Iterable,
+	 *         or -1 if it cannot be known without iterating
+	 */
+	public int size()
+	{
+		return -1;
+	}
+	
+	/**
+	 * @return size() when known, otherwise an upper bound of the number
+	 *         of elements, like the size of the source of a filtered chain, 
+	 *         or -1 if nothing is known
+	 */
+	public int estimateSize()
+	{
+		return size();
+	}
+	
+	/**
+	 * What is known about the elements, as a combination of ORDERED, DISTINCT, 
+	 * SORTED and SIZED. Sources report what they guarantee and each operation 
+	 * keeps what it preserves: map() loses DISTINCT and SORTED, select() loses
+	 * SIZED, an unordered concurrently() loses ORDERED and SORTED. Operations 
+	 * use them to skip work, like sorted() on an Iterable already SORTED.
+	 * @return the characteristics, by default ORDERED, plus SIZED when the size is known
+	 */
+	public int characteristics()
+	{
+		return ( size() >= 0 ) ? ORDERED | SIZED : ORDERED;
+	}
+	
+	/**
+	 * @param nCharacteristics combination of ORDERED, DISTINCT, SORTED and SIZED
+	 * @return true if this Iterable has every given characteristic
+	 */
+	public boolean hasCharacteristics(int nCharacteristics)
+	{
+		return ( characteristics() & nCharacteristics ) == nCharacteristics;
+	}
+	
+	/**
+	 * Splits this Iterable into contiguous parts which, iterated one after 
+	 * the other, return the same elements as this Iterable.
+	 * Used by ConcurrentIterable to give each thread its own chunk of elements
+	 * instead of sharing one synchronized iterator.
+	 * 
+	 * @param nParts
+	 *            maximum number of parts to return
+	 * @return the parts in iteration order, or null if this Iterable cannot
+	 *         be split
+	 */
+	public List<Iterable<T>> split(int nParts)
+	{
+		return null;
+	}
+	
+	/**
+	 * Pushes every element to a sink until it refuses one.
+	 * Every operation computing a result (inject, each, any, etc.) is built 
+	 * on it: sources override it with a direct loop, and fused stages wrap 
+	 * the sink instead of wrapping the iterator.
+	 * By default elements are read from the iterator by batches: when the 
+	 * sink stops, the rest of the current batch has been computed for nothing.
+	 * 
+	 * @param sink
+	 *            Sink receiving every element
+	 * @return true if every element was pushed, false if the sink stopped 
+	 *         the iteration
+	 * @throws FunctionalException
+	 * @see Pipeline
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		Iterator<T> it = iterator();
+		int size = size();
+		Object[] buffer = new Object[( size >= 0 ) ? Math.max(1, Math.min(size, Iterator.BATCH_SIZE)) : Iterator.BATCH_SIZE];
+		int count;
+		while ( (count = it.nextBatch(buffer)) > 0 )
+		{
+			for ( int i = 0; i < count; i += 1 )
+			{
+				if ( !sink.accept((T) buffer[i]) )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Splits with split() when possible, and reports the size when known,
+	 * instead of the default unsized Spliterator copying elements.
+	 * @return a Spliterator on the elements of this Iterable
+	 */
+	@Override
+	public Spliterator<T> spliterator()
+	{
+		return new IterableSpliterator<T>(this);
+	}
+	
+	/**
+	 * @return a sequential Stream on the elements of this Iterable
+	 */
+	public Stream<T> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	/**
+	 * @return a parallel Stream on the elements of this Iterable, 
+	 *         split like ConcurrentIterable splits it
+	 */
+	public Stream<T> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+	
 	/**
 	 * Compare two iterables to see if they return the same elements.
 	 * They must be of equal size of each element must either be the same (==)
-	 * or equals.
+	 * or equals. Iterables of different known sizes are not iterated.
 	 */
 	@SuppressWarnings("unchecked")
 	@Override
@@ -81,13 +358,19 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 		if ( obj instanceof Iterable )
 		{
 			final Iterable<Object> it = (Iterable<Object>) obj;
+			int size = size();
+			int otherSize = it.size();
+			if ( size >= 0 && otherSize >= 0 && size != otherSize )
+			{
+				return false;
+			}
 			try
 			{
-				return combine(it).inject(true, new Function2<Boolean, Boolean, Pair<T, Object>>()
+				return combine(it).all(new Predicate1<Pair<T, Object>>()
 				{
-					public Boolean call(Boolean bOtherEquals, Pair<T, Object> pair) throws FunctionalException 
+					public Boolean call(Pair<T, Object> pair) throws FunctionalException 
 					{
-						return bOtherEquals && ( ( pair.first == pair.second ) || pair.first.equals(pair.second) );
+						return ( pair.first == pair.second ) || ( pair.first != null && pair.first.equals(pair.second) );
 					}
 				});
 			}
@@ -117,7 +400,34 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public <V> V inject(V value, final Function2<V, V, T> injecter) throws FunctionalException
 	{
-		return injectWithIterator(iterator(), value, injecter);
+		Injection<V, T> injection = new Injection<V, T>(value, injecter);
+		push(injection);
+		return injection.m_value;
+	}
+
+	/**
+	 * Computes a value by processing every elements in the iterator. This
+	 * version may be run concurrently: the injection may be split in several 
+	 * partial results, each starting from identity, that are finally merged 
+	 * together with the combiner. The identity must therefore not be modified
+	 * by the injecter, and the combiner must be associative.
+	 * A sequential Iterable simply injects every element in identity.
+	 * 
+	 * @param <V>
+	 *            Type of the value to inject and of the resulting value
+	 * @param identity
+	 *            initial value of every partial injection
+	 * @param injecter
+	 *            Functor that will apply the injection on each element
+	 * @param combiner
+	 *            Functor that will merge two partial results
+	 * @return the injected value modified by the injecter called for every
+	 *         elements
+	 * @throws FunctionalException
+	 */
+	public <V> V inject(V identity, final Function2<V, V, T> injecter, final Function2<V, V, V> combiner) throws FunctionalException
+	{
+		return inject(identity, injecter);
 	}
 
 	/**
@@ -169,16 +479,45 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public <V> Iterable<V> map(final Function1<V, T> mapper)
 	{
-		return new Iterable<V>()
+		return new Pipeline<T, V>(this, new Pipeline.MapStage(mapper));
+	}
+	
+	/**
+	 * Expands every element into the elements of an Iterable. Inner Iterables
+	 * are created lazily, one at a time, while the result is iterated.
+	 * 
+	 * @param <V>
+	 *            Type of the elements of the inner Iterables
+	 * @param mapper
+	 *            Functor returning the Iterable of each element, or null if
+	 *            the element expands to nothing
+	 * @return an Iterable on the elements of every inner Iterable, in order
+	 * @see FlatMap
+	 */
+	public <V> Iterable<V> flatMap(Function1<java.lang.Iterable<V>, T> mapper)
+	{
+		return new FlatMap<T, V>(this, mapper);
+	}
+
+	/**
+	 * Transform every elements in the iterator into primitive ints
+	 * 
+	 * @param mapper
+	 *            Functor that will transform each element of the iterator
+	 * @return an IntIterable containing the transformed elements
+	 */
+	public IntIterable mapToInt(final ToIntFunction1<T> mapper)
+	{
+		return new IntIterable()
 		{
-			public Iterator<V> iterator()
+			public IntIterator iterator()
 			{
 				final Iterator<T> it = Iterable.this.iterator();
-				return new Iterator<V>()
+				return new IntIterator()
 				{
 					public boolean hasNext() { return it.hasNext(); }
-	
-					public V next()
+					
+					public int nextInt()
 					{
 						T next = it.next();
 						try
@@ -188,7 +527,7 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 						catch ( FunctionalException e )
 						{
 							// Iterator#next cannot throw :-(
-							throw new FunctionalRuntimeException(e);
+							throw FunctionalRuntimeException.wrap(e);
 						}
 					}
 				};
@@ -203,75 +542,382 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public Iterable<T> select(final Predicate1<T> predicate)
 	{
-		return new Iterable<T>()
+		return new Pipeline<T, T>(this, new Pipeline.FilterStage(predicate, true));
+	}
+	
+	/**
+	 * Associates every element with its index. 
+	 * Each iterator counts from 0.
+	 * @return an Iterable containing pairs of index and element
+	 * @see #mapWithIndex(IndexedFunction1)
+	 */
+	public Iterable<Pair<Integer, T>> withIndex()
+	{
+		// Pairs are distinct since their indexes are
+		return new IndexedMap<Pair<Integer, T>, T>(this, new IndexedFunction1<Pair<Integer, T>, T>()
 		{
-			public Iterator<T> iterator()
+			public Pair<Integer, T> call(int nIndex, T t)
 			{
-				final Iterator<T> it = Iterable.this.iterator();
-				return new EasierIterator<T>()
+				return new Pair<Integer, T>(nIndex, t);
+			}
+		}, 0, DISTINCT);
+	}
+	
+	/**
+	 * Transform every elements knowing their index, without allocating a
+	 * Pair per element like withIndex(). Each iterator counts from 0, and
+	 * when the source is split in parts of known sizes, each part counts
+	 * from its offset.
+	 * 
+	 * @param mapper
+	 *            Functor receiving the index and the element
+	 * @return an Iterable containing the transformed elements
+	 */
+	public <V> Iterable<V> mapWithIndex(final IndexedFunction1<V, T> mapper)
+	{
+		return new IndexedMap<V, T>(this, mapper, 0, 0);
+	}
+	
+	/**
+	 * Calls procedure for each element with its index
+	 * 
+	 * @param procedure
+	 *            Functor receiving the index and the element
+	 * @throws FunctionalException
+	 * @see #mapWithIndex(IndexedFunction1)
+	 */
+	public void eachWithIndex(final IndexedProcedure1<T> procedure) throws FunctionalException
+	{
+		mapWithIndex(procedure).each(new Procedure1<Void>()
+		{
+			public Void call(Void unused)
+			{
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Combines the elements of two iterables one by one, without allocating
+	 * a Pair per element like combine(). Stops at the end of the shortest.
+	 * 
+	 * @param other
+	 *            Iterable providing the second argument of zipper
+	 * @param zipper
+	 *            Functor combining two elements of same index
+	 * @return an Iterable containing the combined elements
+	 */
+	public <V, R> Iterable<R> zipWith(final java.lang.Iterable<V> other, final Function2<R, T, V> zipper)
+	{
+		return new Iterable<R>()
+		{
+			public Iterator<R> iterator()
+			{
+				final Iterator<T> it1 = Iterable.this.iterator();
+				final java.util.Iterator<V> it2 = other.iterator();
+				return new Iterator<R>()
 				{
-					private T m_tCurrent;
-					
-					@Override
-					protected T getCurrent()
+					public boolean hasNext()
 					{
-						return m_tCurrent;
+						return it1.hasNext() && it2.hasNext();
 					}
-
-					@Override
-					protected boolean moveNext() throws FunctionalException
+					
+					public R next()
 					{
-						while ( it.hasNext() )
+						T value1 = it1.next();
+						try
 						{
-							T t = it.next();
-							if ( predicate.call(t) )
-							{
-								m_tCurrent = t;
-								return true;
-							}
+							return zipper.call(value1, it2.next());
+						}
+						catch ( FunctionalException e )
+						{
+							throw FunctionalRuntimeException.wrap(e);
 						}
-						return false;
 					}
 				};
 			}
+			
+			/**
+			 * Pushes the elements of this Iterable and pulls the other ones
+			 */
+			@Override
+			public boolean push(final Sink<R> sink) throws FunctionalException
+			{
+				final java.util.Iterator<V> it2 = other.iterator();
+				final boolean[] bOtherEnded = new boolean[]{ false };
+				boolean bCompleted = Iterable.this.push(new Sink<T>()
+				{
+					public boolean accept(T t) throws FunctionalException
+					{
+						if ( !it2.hasNext() )
+						{
+							bOtherEnded[0] = true;
+							return false;
+						}
+						return sink.accept(zipper.call(t, it2.next()));
+					}
+				});
+				return bCompleted || bOtherEnded[0];
+			}
+			
+			@Override
+			public int size()
+			{
+				int size1 = Iterable.this.size();
+				int size2 = Iterable.wrap(other).size();
+				return ( size1 < 0 || size2 < 0 ) ? -1 : Math.min(size1, size2);
+			}
 		};
 	}
 	
-	public Iterable<Pair<Integer, T>> withIndex()
+	/**
+	 * @return the number of elements, without iterating when the size is known
+	 * @throws FunctionalException
+	 */
+	public int count() throws FunctionalException
 	{
-		final int[] counter = new int[]{ 0 };
-		return map(new Function1<Pair<Integer, T>, T>()
+		int size = size();
+		if ( size >= 0 )
 		{
-			public Pair<Integer, T> call(T value) throws FunctionalException
+			return size;
+		}
+		final int[] count = new int[]{ 0 };
+		push(new Sink<T>()
+		{
+			public boolean accept(T t)
 			{
-				return new Pair<Integer, T>(counter[0]++, value);
+				count[0] += 1;
+				return true;
 			}
 		});
+		return count[0];
 	}
-
+	
 	/**
-	 * @return the first element of the iterator or null if it does not exists
-	 * @throws FunctionalException 
+	 * Groups the elements by key. Keys and the elements of each group follow
+	 * the order of the iteration. A concurrent Iterable groups the elements
+	 * of every thread in its own map, maps are then merged.
+	 *
+	 * @param <K>
+	 *            Type of the keys
+	 * @param keyFunction
+	 *            computes the key of an element
+	 * @return the list of elements of every key
+	 * @throws FunctionalException
 	 */
-	public T first() throws FunctionalException
+	public <K> Map<K, List<T>> groupBy(Function1<K, T> keyFunction) throws FunctionalException
+	{
+		return aggregateBy(keyFunction, null, new Function2<List<T>, List<T>, T>()
+		{
+			public List<T> call(List<T> group, T t)
+			{
+				if ( group == null )
+				{
+					group = new ArrayList<T>();
+				}
+				group.add(t);
+				return group;
+			}
+		}, new Function2<List<T>, List<T>, List<T>>()
+		{
+			public List<T> call(List<T> group1, List<T> group2)
+			{
+				group1.addAll(group2);
+				return group1;
+			}
+		});
+	}
+	
+	/**
+	 * Counts the elements of every key. Counts are kept in mutable cells
+	 * while counting, so that an element does not box a new Long.
+	 *
+	 * @param <K>
+	 *            Type of the keys
+	 * @param keyFunction
+	 *            computes the key of an element
+	 * @return the number of elements of every key, in the order of the iteration
+	 * @throws FunctionalException
+	 * @see #groupBy(Function1)
+	 */
+	public <K> Map<K, Long> countBy(Function1<K, T> keyFunction) throws FunctionalException
+	{
+		Map<K, long[]> cells = aggregateBy(keyFunction, null, new Function2<long[], long[], T>()
+		{
+			public long[] call(long[] cell, T t)
+			{
+				if ( cell == null )
+				{
+					return new long[]{ 1 };
+				}
+				cell[0] += 1;
+				return cell;
+			}
+		}, new Function2<long[], long[], long[]>()
+		{
+			public long[] call(long[] cell1, long[] cell2)
+			{
+				cell1[0] += cell2[0];
+				return cell1;
+			}
+		});
+		Map<K, Long> counts = new LinkedHashMap<K, Long>(cells.size() * 4 / 3 + 1);
+		for ( Map.Entry<K, long[]> entry : cells.entrySet() )
+		{
+			counts.put(entry.getKey(), entry.getValue()[0]);
+		}
+		return counts;
+	}
+	
+	/**
+	 * Splits the elements in those satisfying a predicate and the others,
+	 * in the order of the iteration
+	 *
+	 * @param predicate
+	 *            predicate to test on every element
+	 * @return a pair of the elements satisfying the predicate and of the others
+	 * @throws FunctionalException
+	 */
+	public Pair<List<T>, List<T>> partition(final Predicate1<T> predicate) throws FunctionalException
 	{
-		return inject(new Function2<T, T, T>()
+		Pair<List<T>, List<T>> partition = inject(null, new Function2<Pair<List<T>, List<T>>, Pair<List<T>, List<T>>, T>()
+		{
+			public Pair<List<T>, List<T>> call(Pair<List<T>, List<T>> partition, T t) throws FunctionalException
+			{
+				if ( partition == null )
+				{
+					partition = new Pair<List<T>, List<T>>(new ArrayList<T>(), new ArrayList<T>());
+				}
+				(predicate.call(t) ? partition.first : partition.second).add(t);
+				return partition;
+			}
+		}, new Function2<Pair<List<T>, List<T>>, Pair<List<T>, List<T>>, Pair<List<T>, List<T>>>()
 		{
-			public T call(T first, T value)
+			public Pair<List<T>, List<T>> call(Pair<List<T>, List<T>> partition1, Pair<List<T>, List<T>> partition2)
 			{
-				return first;
+				if ( partition1 == null )
+				{
+					return partition2;
+				}
+				if ( partition2 != null )
+				{
+					partition1.first.addAll(partition2.first);
+					partition1.second.addAll(partition2.second);
+				}
+				return partition1;
 			}
 		});
+		return ( partition == null ) ? new Pair<List<T>, List<T>>(new ArrayList<T>(), new ArrayList<T>()) : partition;
+	}
+	
+	/**
+	 * Injects the elements of every key in their own value, like inject() does
+	 * for every elements. Each key starts from identity, which must therefore
+	 * not be modified by the injecter. Without a combiner, the values of a key
+	 * cannot be computed by several threads: a concurrent Iterable calls the
+	 * injecter under a lock, like inject(identity, injecter).
+	 *
+	 * @param <K>
+	 *            Type of the keys
+	 * @param <V>
+	 *            Type of the injected values
+	 * @param keyFunction
+	 *            computes the key of an element
+	 * @param identity
+	 *            initial value of every key
+	 * @param injecter
+	 *            Functor that will apply the injection on each element
+	 * @return the injected value of every key, in the order of the iteration
+	 * @throws FunctionalException
+	 * @see #inject(Object, Function2)
+	 */
+	public <K, V> Map<K, V> aggregateBy(Function1<K, T> keyFunction, V identity, Function2<V, V, T> injecter) throws FunctionalException
+	{
+		Map<K, V> aggregates = inject(null, new KeyInjecter<K, V, T>(keyFunction, identity, injecter));
+		return ( aggregates == null ) ? new LinkedHashMap<K, V>() : aggregates;
+	}
+	
+	/**
+	 * Injects the elements of every key in their own value. This version may
+	 * be run concurrently: every thread injects its elements in its own map,
+	 * then the values of a key in several maps are merged with the combiner.
+	 *
+	 * @param <K>
+	 *            Type of the keys
+	 * @param <V>
+	 *            Type of the injected values
+	 * @param keyFunction
+	 *            computes the key of an element
+	 * @param identity
+	 *            initial value of every key in every partial map
+	 * @param injecter
+	 *            Functor that will apply the injection on each element
+	 * @param combiner
+	 *            Functor that will merge two partial values of a key
+	 * @return the injected value of every key, in the order of the iteration
+	 * @throws FunctionalException
+	 * @see #inject(Object, Function2, Function2)
+	 */
+	public <K, V> Map<K, V> aggregateBy(Function1<K, T> keyFunction, V identity, Function2<V, V, T> injecter, Function2<V, V, V> combiner) throws FunctionalException
+	{
+		Map<K, V> aggregates = inject(null, new KeyInjecter<K, V, T>(keyFunction, identity, injecter), new KeyCombiner<K, V>(combiner));
+		return ( aggregates == null ) ? new LinkedHashMap<K, V>() : aggregates;
+	}
+	
+	/**
+	 * Drops the elements equal to one already returned. Returns this Iterable
+	 * when it is already DISTINCT, and only compares consecutive elements when
+	 * it is SORTED, otherwise each iteration remembers the elements in a set.
+	 * @return an Iterable without duplicates
+	 */
+	public Iterable<T> distinct()
+	{
+		return hasCharacteristics(DISTINCT) ? this : new Distinct<T>(this);
+	}
+	
+	/**
+	 * Sorts the elements in their natural order. Returns this Iterable when 
+	 * it is already SORTED, otherwise each iteration dumps the elements in 
+	 * an array and sorts it. Elements must be Comparable.
+	 * @return an Iterable on the sorted elements
+	 */
+	public Iterable<T> sorted()
+	{
+		return hasCharacteristics(SORTED) ? this : new Sorted<T>(this);
+	}
+	
+	/**
+	 * @return the first element of the iterator or null if it does not exists
+	 * @throws FunctionalException 
+	 */
+	public T first() throws FunctionalException
+	{
+		Iterator<T> it = iterator();
+		return it.hasNext() ? it.next() : null;
 	}
 
 	/**
+	 * Stops the iteration as soon as the element has been found.
 	 * @params predicate Predicate describing the first element to search
 	 * @return the first element of the iterator or null if it does not exists
 	 * @throws FunctionalException 
 	 */
-	public T first(Predicate1<T> predicate) throws FunctionalException
+	public T first(final Predicate1<T> predicate) throws FunctionalException
 	{
-		return select(predicate).first();
+		final List<T> found = new ArrayList<T>(1);
+		push(new Sink<T>()
+		{
+			public boolean accept(T t) throws FunctionalException
+			{
+				if ( predicate.call(t) )
+				{
+					found.add(t);
+					return false;
+				}
+				return true;
+			}
+		});
+		return found.isEmpty() ? null : found.get(0);
 	}
 
 	/**
@@ -283,12 +929,12 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public void each(final Procedure1<T> procedure) throws FunctionalException
 	{
-		inject(null, new Function2<Void, Void, T>() 
+		push(new Sink<T>()
 		{
-			public Void call(Void unused, T value) throws FunctionalException 
+			public boolean accept(T t) throws FunctionalException
 			{
-				procedure.call(value);
-				return null;
+				procedure.call(t);
+				return true;
 			}
 		});
 	}
@@ -304,16 +950,18 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public boolean any(final Predicate1<T> predicate) throws FunctionalException
 	{
-		return inject(false, new Function2<Boolean, Boolean, T>() 
+		return !push(new Sink<T>()
 		{
-			public Boolean call(Boolean others, T value) throws FunctionalException 
+			public boolean accept(T t) throws FunctionalException
 			{
-				return others || predicate.call(value);
+				return !predicate.call(t);
 			}
 		});
 	}
 
 	/**
+	 * Stop the iteration after one element does not satisfy the predicate.
+	 * 
 	 * @param predicate
 	 *            Predicate to test each element
 	 * @return true if all elements satisfy the predicate, false otherwise
@@ -321,11 +969,11 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public boolean all(final Predicate1<T> predicate) throws FunctionalException 
 	{
-		return inject(true, new Function2<Boolean, Boolean, T>() 
+		return push(new Sink<T>()
 		{
-			public Boolean call(Boolean others, T value) throws FunctionalException 
+			public boolean accept(T t) throws FunctionalException
 			{
-				return others && predicate.call(value);
+				return predicate.call(t);
 			}
 		});
 	}
@@ -337,7 +985,7 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public Iterable<T> reject(final Predicate1<T> predicate)
 	{
-		return select(new NotPredicate1<T>(predicate));
+		return new Pipeline<T, T>(this, new Pipeline.FilterStage(predicate, false));
 	}
 
 	/**
@@ -347,16 +995,66 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 * @return the collection filled with all elements from the iterator
 	 * @throws FunctionalException 
 	 */
-	public <C extends Collection<T>> C dump(C collection) throws FunctionalException
+	public <C extends Collection<T>> C dump(final C collection) throws FunctionalException
 	{
-		return inject(collection, new Function2<C, C, T>()
+		reserve(collection, size());
+		push(new Sink<T>()
 		{
-			public C call(C collection, T t)
+			public boolean accept(T t)
 			{
 				collection.add(t);
-				return collection;
+				return true;
 			}
 		});
+		return collection;
+	}
+	
+	/**
+	 * Makes room for more elements in a collection, when the number
+	 * of elements is known and the collection supports it
+	 * @param collection collection about to receive elements
+	 * @param count number of elements to add, -1 if unknown
+	 */
+	protected static void reserve(Collection<?> collection, int count)
+	{
+		if ( count > 0 && collection instanceof ArrayList )
+		{
+			((ArrayList<?>) collection).ensureCapacity(collection.size() + count);
+		}
+	}
+	
+	/**
+	 * Writes every element to a file, encoded into direct buffers which 
+	 * are written together with gathering writes.
+	 * 
+	 * @param path
+	 *            file to create, or to overwrite
+	 * @param encoder
+	 *            Encoder writing the bytes of each element, like a TextEncoder
+	 * @return the number of bytes written
+	 * @throws FunctionalException
+	 */
+	public long writeTo(Path path, Encoder<T> encoder) throws FunctionalException
+	{
+		try
+		{
+			FileOutput output = new FileOutput(path);
+			try
+			{
+				EncodingSink<T> sink = output.sink(encoder, -1);
+				push(sink);
+				sink.finish();
+				return output.getBytesWritten();
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new FunctionalException(e);
+		}
 	}
 	
 	/**
@@ -370,24 +1068,45 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 	 */
 	public String join(final String separator) throws FunctionalException
 	{
-		return inject(new StringBuilder(), new Function2<StringBuilder, StringBuilder, T>()
+		return join(separator, new StringBuilder()).toString();
+	}
+	
+	/**
+	 * Writes every element separated by a text, without building the whole
+	 * string first. Elements are transformed into String by calling toString()
+	 * 
+	 * @param separator
+	 *            text to use to separator elements
+	 * @param out
+	 *            receives the text, like a Writer or a StringBuilder
+	 * @return out
+	 * @throws FunctionalException if the text cannot be written
+	 */
+	public <A extends Appendable> A join(final String separator, final A out) throws FunctionalException
+	{
+		push(new Sink<T>()
 		{
-			private boolean m_first = true;
-
-			public StringBuilder call(StringBuilder sb, T value) throws FunctionalException 
+			private boolean m_bFirst = true;
+			
+			public boolean accept(T value) throws FunctionalException
 			{
-				if ( m_first )
+				try
 				{
-					m_first = false;
+					if ( !m_bFirst )
+					{
+						out.append(separator);
+					}
+					m_bFirst = false;
+					out.append(String.valueOf(value));
+					return true;
 				}
-				else
+				catch ( IOException e )
 				{
-					sb.append(separator);
+					throw new FunctionalException(e);
 				}
-				sb.append(value);
-				return sb;
 			}
-		}).toString();
+		});
+		return out;
 	}
 
 	/**
@@ -431,26 +1150,251 @@ public abstract class Iterable<T> implements java.lang.Iterable<T>
 					}
 				};
 			}
+			
+			/**
+			 * The shortest Iterable is completed with nulls
+			 */
+			@Override
+			public int size()
+			{
+				int size1 = Iterable.this.size();
+				int size2 = Iterable.wrap(it).size();
+				return ( size1 < 0 || size2 < 0 ) ? -1 : Math.max(size1, size2);
+			}
 		};
 	}
 	
+	/**
+	 * Remembers elements as they are computed, so that traversing the
+	 * result again does not call the mappers and predicates again.
+	 * @return an Iterable caching every element of this one
+	 * @see CachedIterable
+	 */
+	public CachedIterable<T> cache()
+	{
+		return cache(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Remembers at most nMaxElements elements as they are computed. Every
+	 * traversal going further computes the following elements again: when
+	 * this Iterable splits in parts of known sizes, only the part holding
+	 * the first element that is not cached is computed again from its
+	 * start, otherwise this Iterable is iterated again from its start and
+	 * the nMaxElements cached elements are computed again before reaching
+	 * the following ones.
+	 * @param nMaxElements maximum number of elements to keep in memory
+	 * @return an Iterable caching the first elements of this one
+	 * @see CachedIterable
+	 */
+	public CachedIterable<T> cache(int nMaxElements)
+	{
+		return new CachedIterable<T>(this, nMaxElements);
+	}
+	
+	/**
+	 * Records metrics for the following map(), select(), reject() and 
+	 * inject() stages, and for the workers of a following concurrently(),
+	 * published as MBeans under a stable name.
+	 * @param name name of the pipeline in JMX
+	 * @return an Iterable monitoring the stages chained after it
+	 * @see PipelineMetrics
+	 */
+	public Iterable<T> monitor(String name)
+	{
+		return new MonitoredIterable<T>(this, PipelineMetrics.get(name), 0);
+	}
+	
 	/**
 	 * Wraps the current Iterable in a ConcurrentIterable
-	 * to dispatch iteration on multiple threads
+	 * to dispatch iteration on every thread of the default pool
 	 * @return
+	 * @see DefaultExecutor
 	 */
-	public Iterable<T> concurrently()
+	public ConcurrentIterable<T> concurrently()
 	{
 		return new ConcurrentIterable<T>(this);
 	}
 	
 	/**
 	 * Wraps the current Iterable in a ConcurrentIterable
-	 * to dispatch iteration on multiple threads
+	 * to dispatch iteration on some threads of the default pool
 	 * @return
+	 * @see DefaultExecutor
 	 */
-	public Iterable<T> concurrently(int countThreads)
+	public ConcurrentIterable<T> concurrently(int countThreads)
 	{
 		return new ConcurrentIterable<T>(this, countThreads);
 	}
+	
+	/**
+	 * Wraps the current Iterable in a ConcurrentIterable
+	 * to dispatch iteration on the threads of an executor
+	 * @return
+	 */
+	public ConcurrentIterable<T> concurrently(Executor executor)
+	{
+		return new ConcurrentIterable<T>(this, executor, DefaultExecutor.getCountThreads());
+	}
+	
+	/**
+	 * Wraps the current Iterable in a ConcurrentIterable
+	 * to dispatch iteration on the threads of a fork-join pool
+	 * @return
+	 */
+	public ConcurrentIterable<T> concurrently(ForkJoinPool pool)
+	{
+		return new ConcurrentIterable<T>(this, pool);
+	}
+	
+	/**
+	 * Runs the stages chained so far on their own thread, handing their 
+	 * elements to the following stages through a bounded queue
+	 * @return
+	 * @see PipelinedIterable
+	 */
+	public PipelinedIterable<T> pipelined()
+	{
+		return new PipelinedIterable<T>(this);
+	}
+	
+	/**
+	 * Runs the stages chained so far on their own thread, handing their 
+	 * elements to the following stages through a bounded queue
+	 * @param nCapacity maximum number of elements waiting in the queue
+	 * @return
+	 * @see PipelinedIterable
+	 */
+	public PipelinedIterable<T> pipelined(int nCapacity)
+	{
+		return new PipelinedIterable<T>(this, nCapacity);
+	}
+	
+	/**
+	 * Runs the stages chained so far on a thread of an executor, handing 
+	 * their elements to the following stages through a bounded queue
+	 * @param nCapacity maximum number of elements waiting in the queue
+	 * @return
+	 * @see PipelinedIterable
+	 */
+	public PipelinedIterable<T> pipelined(int nCapacity, Executor executor)
+	{
+		return new PipelinedIterable<T>(this, nCapacity, executor);
+	}
+	
+	/**
+	 * @return a reactive publisher iterating this Iterable for each 
+	 *         subscriber, on the threads of VirtualExecutor
+	 * @see IterablePublisher
+	 */
+	public IterablePublisher<T> publisher()
+	{
+		return new IterablePublisher<T>(this);
+	}
+	
+	/**
+	 * @return a reactive publisher iterating this Iterable for each 
+	 *         subscriber, on the threads of an executor
+	 * @see IterablePublisher
+	 */
+	public IterablePublisher<T> publisher(Executor executor)
+	{
+		return new IterablePublisher<T>(this, executor);
+	}
+	
+	/**
+	 * Sink injecting every element in a value
+	 */
+	private static class Injection<V, T> implements Sink<T>
+	{
+		private V m_value;
+		private Function2<V, V, T> m_injecter;
+		
+		private Injection(V value, Function2<V, V, T> injecter)
+		{
+			m_value = value;
+			m_injecter = injecter;
+		}
+		
+		public boolean accept(T t) throws FunctionalException
+		{
+			m_value = m_injecter.call(m_value, t);
+			return true;
+		}
+	}
+	
+	/**
+	 * Injects an element in the value of its key,
+	 * creating the map on the first element
+	 */
+	private static class KeyInjecter<K, V, T> implements Function2<Map<K, V>, Map<K, V>, T>
+	{
+		private Function1<K, T> m_keyFunction;
+		private V m_identity;
+		private Function2<V, V, T> m_injecter;
+		
+		private KeyInjecter(Function1<K, T> keyFunction, V identity, Function2<V, V, T> injecter)
+		{
+			m_keyFunction = keyFunction;
+			m_identity = identity;
+			m_injecter = injecter;
+		}
+		
+		public Map<K, V> call(Map<K, V> aggregates, T t) throws FunctionalException
+		{
+			if ( aggregates == null )
+			{
+				aggregates = new LinkedHashMap<K, V>();
+			}
+			K key = m_keyFunction.call(t);
+			V aggregate = aggregates.get(key);
+			boolean bNew = ( aggregate == null ) && !aggregates.containsKey(key);
+			V injected = m_injecter.call(bNew ? m_identity : aggregate, t);
+			// A value modified in place is already in the map
+			if ( bNew || injected != aggregate )
+			{
+				aggregates.put(key, injected);
+			}
+			return aggregates;
+		}
+	}
+	
+	/**
+	 * Merges the second map into the first one, keeping the keys of the first map first
+	 */
+	private static class KeyCombiner<K, V> implements Function2<Map<K, V>, Map<K, V>, Map<K, V>>
+	{
+		private Function2<V, V, V> m_combiner;
+		
+		private KeyCombiner(Function2<V, V, V> combiner)
+		{
+			m_combiner = combiner;
+		}
+		
+		public Map<K, V> call(Map<K, V> aggregates1, Map<K, V> aggregates2) throws FunctionalException
+		{
+			if ( aggregates1 == null )
+			{
+				return aggregates2;
+			}
+			if ( aggregates2 == null )
+			{
+				return aggregates1;
+			}
+			for ( Map.Entry<K, V> entry : aggregates2.entrySet() )
+			{
+				K key = entry.getKey();
+				V aggregate = aggregates1.get(key);
+				if ( aggregate == null && !aggregates1.containsKey(key) )
+				{
+					aggregates1.put(key, entry.getValue());
+				}
+				else
+				{
+					aggregates1.put(key, m_combiner.call(aggregate, entry.getValue()));
+				}
+			}
+			return aggregates1;
+		}
+	}
 }
\ No newline at end of file
@@ -1,26 +1,121 @@
 package fr.cantor.functional;
 
-import fr.cantor.functional.exceptions.FunctionalException;
-import fr.cantor.functional.functions.Function1;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+import fr.cantor.functional.exceptions.FunctionalException;
 
+/**
+ * An Iterable on the elements of an array, or on a slice of it.
+ * Elements are iterated by index without any synchronization, 
+ * the size is known and each element can be accessed directly.
+ */
 public class IterableArray<T> extends Iterable<T> 
 {
-	private Iterable<T> m_values;
+	private T[] m_values;
+	private int m_nBegin;
+	private int m_nEnd;
 	
 	public IterableArray(final T[] values) 
 	{
-		m_values = new Range(values.length).map(new Function1<T, Integer>() 
+		this(values, 0, values.length);
+	}
+	
+	/**
+	 * @param values the array to iterate on
+	 * @param nBegin index of the first element (included)
+	 * @param nEnd index of the last element (excluded)
+	 */
+	public IterableArray(final T[] values, int nBegin, int nEnd)
+	{
+		if ( nBegin < 0 || nEnd > values.length || nBegin > nEnd )
 		{
-			public T call(Integer i) throws FunctionalException 
+			throw new IndexOutOfBoundsException("[" + nBegin + ", " + nEnd + "[ in an array of " + values.length);
+		}
+		m_values = values;
+		m_nBegin = nBegin;
+		m_nEnd = nEnd;
+	}
+	
+	public Iterator<T> iterator() 
+	{
+		return new Iterator<T>()
+		{
+			private int m_nIndex = m_nBegin;
+			
+			public boolean hasNext()
+			{
+				return m_nIndex < m_nEnd;
+			}
+			
+			public T next()
 			{
-				return values[i];
+				if ( m_nIndex >= m_nEnd )
+				{
+					throw new NoSuchElementException();
+				}
+				return m_values[m_nIndex++];
 			}
-		});
+			
+			@Override
+			public int nextBatch(Object[] buffer)
+			{
+				int count = Math.min(buffer.length, m_nEnd - m_nIndex);
+				System.arraycopy(m_values, m_nIndex, buffer, 0, count);
+				m_nIndex += count;
+				return count;
+			}
+		};
 	}
 	
-	public Iterator<T> iterator() 
+	/**
+	 * @param nIndex index of the element, from 0 to size() - 1
+	 * @return the element at this index
+	 */
+	public T get(int nIndex)
 	{
-		return m_values.iterator();
+		if ( nIndex < 0 || nIndex >= size() )
+		{
+			throw new IndexOutOfBoundsException(nIndex + " out of " + size());
+		}
+		return m_values[m_nBegin + nIndex];
+	}
+	
+	/**
+	 * Directly loops on the array instead of using an iterator
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		for ( int i = m_nBegin; i < m_nEnd; i += 1 )
+		{
+			if ( !sink.accept(m_values[i]) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_nEnd - m_nBegin;
+	}
+	
+	/**
+	 * Splits the array in contiguous slices of nearly equal sizes
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		int[] bounds = Range.splitBounds(size(), nParts);
+		List<Iterable<T>> parts = new ArrayList<Iterable<T>>(bounds.length - 1);
+		for ( int i = 1; i < bounds.length; i += 1 )
+		{
+			parts.add(new IterableArray<T>(m_values, m_nBegin + bounds[i - 1], m_nBegin + bounds[i]));
+		}
+		return parts;
 	}
 }
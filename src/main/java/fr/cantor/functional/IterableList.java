@@ -0,0 +1,134 @@
+package fr.cantor.functional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * An Iterable on the elements of a random access list, like an ArrayList,
+ * or on a slice of it. Elements are iterated by index without any 
+ * synchronization, the size is known and each element can be accessed directly.
+ * Iterable.wrap() returns one for every RandomAccess list.
+ * The whole list is a live view: every iteration, push() or split() reads
+ * the size of the list when it starts. Only the slices returned by split()
+ * keep their bounds.
+ */
+public class IterableList<T> extends Iterable<T>
+{
+	private List<T> m_list;
+	private int m_nBegin;
+	private int m_nEnd;
+	
+	public <L extends List<T> & RandomAccess> IterableList(L list)
+	{
+		this(list, 0, -1);
+	}
+	
+	/**
+	 * @param list the list to iterate on, which must implement RandomAccess
+	 * @param nBegin index of the first element (included)
+	 * @param nEnd index of the last element (excluded), or -1 for the end of the list
+	 */
+	IterableList(List<T> list, int nBegin, int nEnd)
+	{
+		m_list = list;
+		m_nBegin = nBegin;
+		m_nEnd = nEnd;
+	}
+	
+	public Iterator<T> iterator()
+	{
+		return new Iterator<T>()
+		{
+			private int m_nIndex = m_nBegin;
+			private final int m_nEndIndex = getEnd();
+			
+			public boolean hasNext()
+			{
+				return m_nIndex < m_nEndIndex;
+			}
+			
+			public T next()
+			{
+				if ( m_nIndex >= m_nEndIndex )
+				{
+					throw new NoSuchElementException();
+				}
+				return m_list.get(m_nIndex++);
+			}
+			
+			@Override
+			public int nextBatch(Object[] buffer)
+			{
+				int count = Math.min(buffer.length, m_nEndIndex - m_nIndex);
+				for ( int i = 0; i < count; i += 1 )
+				{
+					buffer[i] = m_list.get(m_nIndex++);
+				}
+				return count;
+			}
+		};
+	}
+	
+	/**
+	 * @param nIndex index of the element, from 0 to size() - 1
+	 * @return the element at this index
+	 */
+	public T get(int nIndex)
+	{
+		if ( nIndex < 0 || nIndex >= size() )
+		{
+			throw new IndexOutOfBoundsException(nIndex + " out of " + size());
+		}
+		return m_list.get(m_nBegin + nIndex);
+	}
+	
+	/**
+	 * Directly loops on the list instead of using an iterator
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		int nEnd = getEnd();
+		for ( int i = m_nBegin; i < nEnd; i += 1 )
+		{
+			if ( !sink.accept(m_list.get(i)) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int size()
+	{
+		return getEnd() - m_nBegin;
+	}
+	
+	/**
+	 * Splits the list in contiguous slices of nearly equal sizes
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		int[] bounds = Range.splitBounds(size(), nParts);
+		List<Iterable<T>> parts = new ArrayList<Iterable<T>>(bounds.length - 1);
+		for ( int i = 1; i < bounds.length; i += 1 )
+		{
+			parts.add(new IterableList<T>(m_list, m_nBegin + bounds[i - 1], m_nBegin + bounds[i]));
+		}
+		return parts;
+	}
+	
+	/**
+	 * @return the index of the last element (excluded), the current size of the list for a live view
+	 */
+	private int getEnd()
+	{
+		return ( m_nEnd < 0 ) ? m_list.size() : m_nEnd;
+	}
+}
@@ -0,0 +1,191 @@
+package fr.cantor.functional;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
+/**
+ * A Spliterator built on the size, split and push of an Iterable.
+ * 
+ * Sources of known size are SIZED and SUBSIZED, and are split with their
+ * own split() without copying anything. Other sources are split like the 
+ * JDK does, by reading batches of growing sizes into arrays, but with 
+ * nextBatch() instead of one synchronized call per element.
+ * A traversal of the whole Spliterator goes through push().
+ */
+class IterableSpliterator<T> implements Spliterator<T>
+{
+	private static final int BATCH_INCREMENT = 1 << 10;
+	private static final int MAX_BATCH = 1 << 25;
+	
+	private Iterable<T> m_iterable;
+	// Opened on the first element read, from then on the spliterator is not split by the source
+	private Iterator<T> m_iterator = null;
+	// Number of elements left if known, -1 otherwise
+	private long m_nRemaining;
+	// ORDERED, DISTINCT and SORTED as reported by the Iterable
+	private int m_nCharacteristics;
+	private int m_nBatch = 0;
+	
+	IterableSpliterator(Iterable<T> iterable)
+	{
+		m_iterable = iterable;
+		m_nRemaining = iterable.size();
+		m_nCharacteristics = iterable.characteristics() & (Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED);
+	}
+	
+	public boolean tryAdvance(final Consumer<? super T> action)
+	{
+		if ( m_iterator == null )
+		{
+			m_iterator = m_iterable.iterator();
+		}
+		try
+		{
+			if ( !m_iterator.tryAdvance(new Procedure1<T>()
+			{
+				public Void call(T t)
+				{
+					action.accept(t);
+					return null;
+				}
+			}) )
+			{
+				return false;
+			}
+		}
+		catch ( FunctionalException e )
+		{
+			throw FunctionalRuntimeException.wrap(e);
+		}
+		if ( m_nRemaining > 0 )
+		{
+			m_nRemaining -= 1;
+		}
+		return true;
+	}
+	
+	public void forEachRemaining(final Consumer<? super T> action)
+	{
+		if ( m_iterator != null )
+		{
+			while ( m_iterator.hasNext() )
+			{
+				action.accept(m_iterator.next());
+			}
+		}
+		else
+		{
+			try
+			{
+				m_iterable.push(new Sink<T>()
+				{
+					public boolean accept(T t)
+					{
+						action.accept(t);
+						return true;
+					}
+				});
+			}
+			catch ( FunctionalException e )
+			{
+				throw FunctionalRuntimeException.wrap(e);
+			}
+			m_iterator = Iterator.wrap(Collections.<T>emptyIterator());
+		}
+		m_nRemaining = 0;
+	}
+	
+	public Spliterator<T> trySplit()
+	{
+		if ( m_iterator == null )
+		{
+			List<Iterable<T>> parts = m_iterable.split(2);
+			if ( parts != null )
+			{
+				if ( parts.size() < 2 )
+				{
+					return null;
+				}
+				m_iterable = parts.get(1);
+				m_nRemaining = m_iterable.size();
+				return new IterableSpliterator<T>(parts.get(0));
+			}
+			m_iterator = m_iterable.iterator();
+		}
+		// The source cannot be split: copy a batch of elements
+		m_nBatch = Math.min(m_nBatch + BATCH_INCREMENT, MAX_BATCH);
+		if ( m_nRemaining >= 0 )
+		{
+			m_nBatch = (int) Math.min(m_nBatch, m_nRemaining);
+		}
+		if ( m_nBatch == 0 )
+		{
+			return null;
+		}
+		Object[] batch = new Object[m_nBatch];
+		int count = 0;
+		int countRead;
+		while ( count < batch.length )
+		{
+			Object[] buffer = ( count == 0 ) ? batch : new Object[batch.length - count];
+			countRead = m_iterator.nextBatch(buffer);
+			if ( countRead == 0 )
+			{
+				break;
+			}
+			if ( buffer != batch )
+			{
+				System.arraycopy(buffer, 0, batch, count, countRead);
+			}
+			count += countRead;
+		}
+		if ( count == 0 )
+		{
+			return null;
+		}
+		if ( m_nRemaining > 0 )
+		{
+			m_nRemaining -= count;
+		}
+		return Spliterators.spliterator(batch, 0, count, m_nCharacteristics);
+	}
+	
+	/**
+	 * Before the iteration starts, an unknown size is estimated by the Iterable
+	 */
+	public long estimateSize()
+	{
+		if ( m_nRemaining >= 0 )
+		{
+			return m_nRemaining;
+		}
+		int nEstimate = ( m_iterator == null ) ? m_iterable.estimateSize() : -1;
+		return ( nEstimate >= 0 ) ? nEstimate : Long.MAX_VALUE;
+	}
+	
+	public int characteristics()
+	{
+		return ( m_nRemaining >= 0 ) ? m_nCharacteristics | Spliterator.SIZED | Spliterator.SUBSIZED : m_nCharacteristics;
+	}
+	
+	/**
+	 * SORTED means sorted in the natural order
+	 */
+	@Override
+	public Comparator<? super T> getComparator()
+	{
+		if ( ( m_nCharacteristics & Spliterator.SORTED ) == 0 )
+		{
+			throw new IllegalStateException();
+		}
+		return null;
+	}
+}
@@ -1,5 +1,9 @@
 package fr.cantor.functional;
 
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
 /**
  * A read-only implementation of java.util.Iterator
  * @param <T> Type to iterate on
@@ -27,6 +31,78 @@ public abstract class Iterator<T> extends Iterable<T> implements java.util.Itera
 		return it;
 	}
 	
+	/**
+	 * Number of elements a batch usually holds
+	 */
+	public static final int BATCH_SIZE = 256;
+	
+	/**
+	 * Bulk version of next(): fills a buffer with the next elements, 
+	 * so that one call covers many elements. Iterators which can do it 
+	 * faster than hasNext()/next() override it, like a synchronized 
+	 * iterator taking its lock once per batch.
+	 * 
+	 * @param buffer
+	 *            array receiving the next elements from index 0
+	 * @return the number of elements written in buffer, 0 only if there 
+	 *         is no more element
+	 */
+	public int nextBatch(Object[] buffer)
+	{
+		int count = 0;
+		while ( count < buffer.length && hasNext() )
+		{
+			buffer[count++] = next();
+		}
+		return count;
+	}
+	
+	/**
+	 * Takes the next element, if any, and gives it to a procedure.
+	 * Unlike hasNext() then next(), taking the element is a single step, 
+	 * so threads sharing a synchronized iterator cannot see an element 
+	 * announced by hasNext() taken by another thread before their next(). 
+	 * The end of the iteration is reported by the result instead of a 
+	 * NoSuchElementException, and checked exceptions are thrown as they are
+	 * instead of being wrapped. Iterators computing their elements with 
+	 * functions override it to call them directly.
+	 * 
+	 * @param procedure
+	 *            procedure called on the next element
+	 * @return false if there is no more element, the procedure is then not called
+	 */
+	public boolean tryAdvance(Procedure1<T> procedure) throws FunctionalException
+	{
+		T next;
+		try
+		{
+			if ( !hasNext() )
+			{
+				return false;
+			}
+			next = next();
+		}
+		catch ( FunctionalRuntimeException e )
+		{
+			throw unwrap(e);
+		}
+		procedure.call(next);
+		return true;
+	}
+	
+	/**
+	 * @return the checked exception carried by e, to be thrown instead of it
+	 * @throws FunctionalRuntimeException e itself if it does not carry one
+	 */
+	static FunctionalException unwrap(FunctionalRuntimeException e)
+	{
+		if ( e.getCause() instanceof FunctionalException )
+		{
+			return (FunctionalException) e.getCause();
+		}
+		throw e;
+	}
+	
 	/**
 	 * Our iterator is read-only
 	 * @throws UnsupportedOperationException This Iterator class in read-only
@@ -35,7 +111,7 @@ public abstract class Iterator<T> extends Iterable<T> implements java.util.Itera
 	{
 		throw new UnsupportedOperationException();
 	}
-
+	
 	/**
 	 * Iterator is also iterable in a for-loop, yes this is convenient
 	 * @return this iterator
@@ -0,0 +1,369 @@
+package fr.cantor.functional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
+/**
+ * Consecutive map(), select() and reject() stages fused together on top of a source.
+ * Instead of wrapping the source in one more iterator per stage, every stage is appended
+ * to the same pipeline and each element goes through all of them in a single loop.
+ * Consecutive select() and reject() are merged into one array of predicates.
+ * 
+ * @param <S>
+ *            Type of the elements of the source
+ * @param <T>
+ *            Type of the elements coming out of the last stage
+ */
+public class Pipeline<S, T> extends Iterable<T>
+{
+	/**
+	 * Returned by a stage to drop the element
+	 */
+	private static final Object SKIP = new Object();
+	
+	private Iterable<S> m_source;
+	private Stage[] m_stages;
+	
+	Pipeline(Iterable<S> source, Stage stage)
+	{
+		this(source, new Stage[]{ stage });
+	}
+	
+	private Pipeline(Iterable<S> source, Stage[] stages)
+	{
+		m_source = source;
+		m_stages = stages;
+	}
+	
+	/**
+	 * @return the Iterable providing the elements entering the first stage
+	 */
+	public Iterable<S> getSource()
+	{
+		return m_source;
+	}
+	
+	/**
+	 * Builds a sink which runs every stage on the elements of the source 
+	 * before pushing them to another sink. Used to run the stages 
+	 * on elements taken from the source by another mean than push(), 
+	 * like the workers of ConcurrentIterable.
+	 * 
+	 * @param sink
+	 *            Sink receiving the elements coming out of the last stage
+	 * @return a Sink receiving the elements of the source
+	 */
+	public Sink<S> wrap(final Sink<T> sink)
+	{
+		return new Sink<S>()
+		{
+			@SuppressWarnings("unchecked")
+			public boolean accept(S s) throws FunctionalException
+			{
+				Object value = apply(s);
+				return ( value == SKIP ) || sink.accept((T) value);
+			}
+		};
+	}
+	
+	public Iterator<T> iterator()
+	{
+		final Iterator<S> it = m_source.iterator();
+		return new Iterator<T>()
+		{
+			// Next element, already through every stage, or SKIP if not computed yet
+			private Object m_next = SKIP;
+			
+			// Runs the stages on an element of the source
+			private final Procedure1<S> m_apply = new Procedure1<S>()
+			{
+				public Void call(S s) throws FunctionalException
+				{
+					m_next = apply(s);
+					return null;
+				}
+			};
+			
+			public boolean hasNext()
+			{
+				try
+				{
+					while ( m_next == SKIP && it.tryAdvance(m_apply) )
+					{
+						// m_apply sets m_next, to SKIP if a stage dropped the element
+					}
+					return m_next != SKIP;
+				}
+				catch ( FunctionalException e )
+				{
+					throw FunctionalRuntimeException.wrap(e);
+				}
+			}
+			
+			/**
+			 * Runs the stages without wrapping their exceptions
+			 */
+			@SuppressWarnings("unchecked")
+			@Override
+			public boolean tryAdvance(Procedure1<T> procedure) throws FunctionalException
+			{
+				while ( m_next == SKIP )
+				{
+					if ( !it.tryAdvance(m_apply) )
+					{
+						return false;
+					}
+				}
+				T next = (T) m_next;
+				m_next = SKIP;
+				procedure.call(next);
+				return true;
+			}
+			
+			@SuppressWarnings("unchecked")
+			public T next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				T next = (T) m_next;
+				m_next = SKIP;
+				return next;
+			}
+			
+			/**
+			 * Reads a batch of the source and runs the stages on it in place
+			 */
+			@Override
+			public int nextBatch(Object[] buffer)
+			{
+				if ( m_next != SKIP )
+				{
+					return super.nextBatch(buffer);
+				}
+				try
+				{
+					int count = 0;
+					while ( count == 0 )
+					{
+						int countRead = it.nextBatch(buffer);
+						if ( countRead == 0 )
+						{
+							return 0;
+						}
+						for ( int i = 0; i < countRead; i += 1 )
+						{
+							Object value = apply(buffer[i]);
+							if ( value != SKIP )
+							{
+								buffer[count++] = value;
+							}
+						}
+						Arrays.fill(buffer, count, countRead, null);
+					}
+					return count;
+				}
+				catch ( FunctionalException e )
+				{
+					throw FunctionalRuntimeException.wrap(e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Pushes the elements of the source through every stage
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return m_source.push(wrap(sink));
+	}
+	
+	/**
+	 * @return the size of the source if there is no filtering stage
+	 */
+	@Override
+	public int size()
+	{
+		for ( Stage stage : m_stages )
+		{
+			if ( stage instanceof FilterStage )
+			{
+				return -1;
+			}
+		}
+		return m_source.size();
+	}
+	
+	/**
+	 * @return the size of the source, an upper bound when elements are filtered
+	 */
+	@Override
+	public int estimateSize()
+	{
+		return m_source.estimateSize();
+	}
+	
+	/**
+	 * Mapping stages lose DISTINCT and SORTED, filtering ones lose SIZED
+	 */
+	@Override
+	public int characteristics()
+	{
+		int nCharacteristics = m_source.characteristics();
+		for ( Stage stage : m_stages )
+		{
+			nCharacteristics &= ( stage instanceof FilterStage ) ? ~SIZED : ~(DISTINCT | SORTED);
+		}
+		return nCharacteristics;
+	}
+	
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		List<Iterable<S>> parts = m_source.split(nParts);
+		if ( parts == null )
+		{
+			return null;
+		}
+		List<Iterable<T>> pipelines = new ArrayList<Iterable<T>>(parts.size());
+		for ( Iterable<S> part : parts )
+		{
+			pipelines.add(new Pipeline<S, T>(part, m_stages));
+		}
+		return pipelines;
+	}
+	
+	@Override
+	public <V> Iterable<V> map(Function1<V, T> mapper)
+	{
+		return new Pipeline<S, V>(m_source, append(new MapStage(mapper)));
+	}
+	
+	@Override
+	public Iterable<T> select(Predicate1<T> predicate)
+	{
+		return new Pipeline<S, T>(m_source, append(new FilterStage(predicate, true)));
+	}
+	
+	@Override
+	public Iterable<T> reject(Predicate1<T> predicate)
+	{
+		return new Pipeline<S, T>(m_source, append(new FilterStage(predicate, false)));
+	}
+	
+	/**
+	 * Runs every stage on one element of the source
+	 * @return the value coming out of the last stage, or SKIP if a stage dropped it
+	 */
+	private Object apply(Object value) throws FunctionalException
+	{
+		for ( Stage stage : m_stages )
+		{
+			value = stage.apply(value);
+			if ( value == SKIP )
+			{
+				break;
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * @return a copy of the stages with one more stage, 
+	 *         merged with the last one when both are filters
+	 */
+	private Stage[] append(Stage stage)
+	{
+		Stage last = m_stages[m_stages.length - 1];
+		if ( last instanceof FilterStage && stage instanceof FilterStage )
+		{
+			Stage[] stages = m_stages.clone();
+			stages[stages.length - 1] = ((FilterStage) last).merge((FilterStage) stage);
+			return stages;
+		}
+		Stage[] stages = new Stage[m_stages.length + 1];
+		System.arraycopy(m_stages, 0, stages, 0, m_stages.length);
+		stages[m_stages.length] = stage;
+		return stages;
+	}
+	
+	static abstract class Stage
+	{
+		/**
+		 * @return the transformed value, or SKIP to drop the element
+		 */
+		abstract Object apply(Object value) throws FunctionalException;
+	}
+	
+	static class MapStage extends Stage
+	{
+		private Function1<Object, Object> m_mapper;
+		
+		@SuppressWarnings("unchecked")
+		MapStage(Function1<?, ?> mapper)
+		{
+			m_mapper = (Function1<Object, Object>) mapper;
+		}
+		
+		@Override
+		Object apply(Object value) throws FunctionalException
+		{
+			return m_mapper.call(value);
+		}
+	}
+	
+	static class FilterStage extends Stage
+	{
+		private Predicate1<Object>[] m_predicates;
+		private boolean[] m_keeps;
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		FilterStage(Predicate1<?> predicate, boolean bKeep)
+		{
+			this(new Predicate1[]{ predicate }, new boolean[]{ bKeep });
+		}
+		
+		private FilterStage(Predicate1<Object>[] predicates, boolean[] keeps)
+		{
+			m_predicates = predicates;
+			m_keeps = keeps;
+		}
+		
+		@Override
+		Object apply(Object value) throws FunctionalException
+		{
+			for ( int i = 0; i < m_predicates.length; i += 1 )
+			{
+				if ( m_predicates[i].call(value) != m_keeps[i] )
+				{
+					return SKIP;
+				}
+			}
+			return value;
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		FilterStage merge(FilterStage other)
+		{
+			int count = m_predicates.length + other.m_predicates.length;
+			Predicate1<Object>[] predicates = new Predicate1[count];
+			boolean[] keeps = new boolean[count];
+			System.arraycopy(m_predicates, 0, predicates, 0, m_predicates.length);
+			System.arraycopy(other.m_predicates, 0, predicates, m_predicates.length, other.m_predicates.length);
+			System.arraycopy(m_keeps, 0, keeps, 0, m_keeps.length);
+			System.arraycopy(other.m_keeps, 0, keeps, m_keeps.length, other.m_keeps.length);
+			return new FilterStage(predicates, keeps);
+		}
+	}
+}
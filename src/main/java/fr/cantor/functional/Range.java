@@ -1,7 +1,10 @@
 package fr.cantor.functional;
 
-import fr.cantor.functional.exceptions.FunctionalException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+import fr.cantor.functional.exceptions.FunctionalException;
 
 
 /**
@@ -34,24 +37,129 @@ public class Range extends Iterable<Integer>
 		m_nEnd = nEnd;
 	}
 
+	/**
+	 * The iterator is not synchronized: ConcurrentIterable splits 
+	 * ranges instead of sharing their iterator.
+	 */
 	public Iterator<Integer> iterator()
 	{
-		return new EasierIterator<Integer>()
+		return new Iterator<Integer>()
 		{
-			private Integer m_nIndex = m_nBegin - 1;
+			// long to support a range ending on Integer.MAX_VALUE
+			private long m_nIndex = m_nBegin;
 			
-			@Override
-			protected Integer getCurrent() throws FunctionalException
+			public boolean hasNext()
+			{
+				return m_nIndex <= m_nEnd;
+			}
+			
+			public Integer next()
 			{
-				return m_nIndex;
+				if ( m_nIndex > m_nEnd )
+				{
+					throw new NoSuchElementException();
+				}
+				return (int) m_nIndex++;
 			}
 			
 			@Override
-			protected boolean moveNext() throws FunctionalException
+			public int nextBatch(Object[] buffer)
 			{
-				m_nIndex += 1;
-				return (m_nIndex <= m_nEnd);
+				int count = (int) Math.max(0, Math.min(buffer.length, m_nEnd - m_nIndex + 1));
+				for ( int i = 0; i < count; i += 1 )
+				{
+					buffer[i] = (int) m_nIndex++;
+				}
+				return count;
 			}
-		}.synchronizedIterator();
+		};
+	}
+	
+	/**
+	 * Directly loops on the range instead of using an iterator
+	 */
+	@Override
+	public boolean push(Sink<Integer> sink) throws FunctionalException
+	{
+		for ( long n = m_nBegin; n <= m_nEnd; n += 1 )
+		{
+			if ( !sink.accept((int) n) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the number of integers, or -1 if there are more than Integer.MAX_VALUE
+	 */
+	@Override
+	public int size()
+	{
+		long size = (long) m_nEnd - m_nBegin + 1;
+		return ( size > Integer.MAX_VALUE ) ? -1 : (int) Math.max(0, size);
+	}
+	
+	/**
+	 * Integers of a range are increasing
+	 */
+	@Override
+	public int characteristics()
+	{
+		return ( size() >= 0 ) ? ORDERED | SIZED | SORTED | DISTINCT : ORDERED | SORTED | DISTINCT;
+	}
+	
+	/**
+	 * Splits the range in contiguous sub-ranges of nearly equal sizes
+	 * @return null if the range has more than Integer.MAX_VALUE integers
+	 */
+	@Override
+	public List<Iterable<Integer>> split(int nParts)
+	{
+		int[] bounds = splitBounds(size(), nParts);
+		if ( bounds == null )
+		{
+			return null;
+		}
+		List<Iterable<Integer>> parts = new ArrayList<Iterable<Integer>>(bounds.length - 1);
+		for ( int i = 1; i < bounds.length; i += 1 )
+		{
+			parts.add(new Range(m_nBegin + bounds[i - 1], m_nBegin + bounds[i] - 1));
+		}
+		return parts;
+	}
+	
+	/**
+	 * Computes the bounds of contiguous parts of nearly equal sizes,
+	 * used to split any indexed Iterable.
+	 * @param size number of elements to split
+	 * @param nParts maximum number of parts
+	 * @return the offsets where each part begins, followed by size,
+	 *         or null if the size is not known
+	 */
+	static int[] splitBounds(int size, int nParts)
+	{
+		if ( size < 0 )
+		{
+			return null;
+		}
+		int countParts = Math.max(1, Math.min(nParts, size));
+		int[] bounds = new int[countParts + 1];
+		for ( int i = 0; i < countParts; i += 1 )
+		{
+			int partSize = size / countParts + (i < size % countParts ? 1 : 0);
+			bounds[i + 1] = bounds[i] + partSize;
+		}
+		return bounds;
+	}
+	
+	/**
+	 * @return the same range as a primitive IntIterable, 
+	 *         to process it without boxing every element
+	 */
+	public IntRange ints()
+	{
+		return new IntRange(m_nBegin, m_nEnd);
 	}
 }
\ No newline at end of file
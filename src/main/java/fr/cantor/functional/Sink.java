@@ -0,0 +1,21 @@
+package fr.cantor.functional;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Receives the elements pushed by Iterable.push().
+ * Pushing elements to a sink is cheaper than pulling them from an iterator
+ * since there is no hasNext()/next() state to maintain for every stage.
+ * 
+ * @param <T>
+ *            Type of the received elements
+ * @see Iterable#push(Sink)
+ */
+public interface Sink<T>
+{
+	/**
+	 * @param t the pushed element
+	 * @return true to receive the next elements, false to stop the iteration
+	 */
+	public boolean accept(T t) throws FunctionalException;
+}
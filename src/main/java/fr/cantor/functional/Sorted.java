@@ -0,0 +1,85 @@
+package fr.cantor.functional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * The elements of a source in their natural order.
+ * Each iteration dumps the source in an array, sized when the size of the
+ * source is known, sorts it and iterates on it.
+ * 
+ * @see Iterable#sorted()
+ */
+class Sorted<T> extends Iterable<T>
+{
+	private Iterable<T> m_source;
+	
+	Sorted(Iterable<T> source)
+	{
+		m_source = source;
+	}
+	
+	public Iterator<T> iterator()
+	{
+		try
+		{
+			return sort().iterator();
+		}
+		catch ( FunctionalException e )
+		{
+			throw FunctionalRuntimeException.wrap(e);
+		}
+	}
+	
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return sort().push(sink);
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_source.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_source.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return ( m_source.characteristics() & (SIZED | DISTINCT) ) | ORDERED | SORTED;
+	}
+	
+	/**
+	 * Sorts the whole source, then splits the sorted array
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		try
+		{
+			return sort().split(nParts);
+		}
+		catch ( FunctionalException e )
+		{
+			throw FunctionalRuntimeException.wrap(e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private IterableArray<T> sort() throws FunctionalException
+	{
+		Object[] values = m_source.dump(new ArrayList<T>()).toArray();
+		Arrays.sort(values);
+		return new IterableArray<T>((T[]) values);
+	}
+}
@@ -1,9 +1,13 @@
 package fr.cantor.functional;
 
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
 public class SynchronizedIterator<T> extends Iterator<T>
 {
 	private java.util.Iterator<T> m_iterator;
-
+	
 	public SynchronizedIterator(java.util.Iterator<T> iterator)
 	{
 		m_iterator = iterator;
@@ -13,12 +17,68 @@ public class SynchronizedIterator<T> extends Iterator<T>
 	{
 		return m_iterator.hasNext();
 	}
-
+	
 	public synchronized T next()
 	{
 		return m_iterator.next();
 	}
 	
+	/**
+	 * Takes the lock once for the whole batch
+	 */
+	@Override
+	public synchronized int nextBatch(Object[] buffer)
+	{
+		if ( m_iterator instanceof Iterator )
+		{
+			return ((Iterator<T>) m_iterator).nextBatch(buffer);
+		}
+		int count = 0;
+		while ( count < buffer.length && m_iterator.hasNext() )
+		{
+			buffer[count++] = m_iterator.next();
+		}
+		return count;
+	}
+	
+	/**
+	 * Takes the next element under the lock, but calls the procedure 
+	 * after releasing it, so that threads only wait for each other while
+	 * taking elements
+	 */
+	@Override
+	public boolean tryAdvance(Procedure1<T> procedure) throws FunctionalException
+	{
+		Claim<T> claim = new Claim<T>();
+		synchronized ( this )
+		{
+			if ( m_iterator instanceof Iterator )
+			{
+				if ( !((Iterator<T>) m_iterator).tryAdvance(claim) )
+				{
+					return false;
+				}
+			}
+			else
+			{
+				try
+				{
+					if ( !m_iterator.hasNext() )
+					{
+						return false;
+					}
+					claim.m_value = m_iterator.next();
+				}
+				catch ( FunctionalRuntimeException e )
+				{
+					throw unwrap(e);
+				}
+			}
+		}
+		procedure.call(claim.m_value);
+		return true;
+	}
+	
 	/**
 	 * This iterator is already synchronized.
 	 * @return this
@@ -28,4 +88,18 @@ public class SynchronizedIterator<T> extends Iterator<T>
 	{
 		return this;
 	}
+	
+	/**
+	 * Remembers the element taken under the lock
+	 */
+	private static class Claim<T> implements Procedure1<T>
+	{
+		private T m_value;
+		
+		public Void call(T t)
+		{
+			m_value = t;
+			return null;
+		}
+	}
 }
@@ -1,109 +1,1368 @@
 package fr.cantor.functional.concurrent;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import fr.cantor.functional.FlatMap;
 import fr.cantor.functional.Iterable;
 import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Pipeline;
 import fr.cantor.functional.Range;
+import fr.cantor.functional.Sink;
 import fr.cantor.functional.exceptions.FunctionalException;
 import fr.cantor.functional.exceptions.FunctionalRuntimeException;
 import fr.cantor.functional.functions.Function1;
 import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.IndexedFunction1;
+import fr.cantor.functional.functions.predicates.NotPredicate1;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+import fr.cantor.functional.io.Encoder;
+import fr.cantor.functional.io.EncodingSink;
+import fr.cantor.functional.io.FileOutput;
+import fr.cantor.functional.metrics.MonitoredIterable;
+import fr.cantor.functional.metrics.WorkerMetrics;
 
+/**
+ * An Iterable dispatching its iteration on multiple threads.
+ * Threads are taken from an executor, by default the process-wide
+ * pool of DefaultExecutor, and the calling thread also takes part 
+ * in the iteration.
+ */
 public class ConcurrentIterable<T> extends Iterable<T>
 {
+	/**
+	 * Default number of elements or parts processed at the same time in virtual mode
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+	
+	/**
+	 * Default maximum number of elements processed or waiting in ordered mode
+	 */
+	public static final int DEFAULT_ORDERED_WINDOW = 1024;
+	
+	/**
+	 * Maximum number of elements a thread takes at once from a shared iterator
+	 */
+	private static final int MAX_SHARED_BATCH = 64;
+	
+	/**
+	 * Minimum number of segments per thread written by join(separator, out)
+	 */
+	private static final int SEGMENTS_PER_THREAD = 4;
+	
+	/**
+	 * Number of elements per segment written by join(separator, out), when there are enough elements
+	 */
+	private static final int ELEMENTS_PER_SEGMENT = 4096;
+	
 	private Iterable<T> m_iterable;
 	private int m_countThreads;
+	private Executor m_executor;
+	private int m_nOrderedWindow;
 
+	/**
+	 * Use every thread of the default pool
+	 */
 	public ConcurrentIterable(Iterable<T> iterable)
 	{
-		this(iterable, Runtime.getRuntime().availableProcessors());
+		this(iterable, DefaultExecutor.getCountThreads());
+	}
+	
+	/**
+	 * Use a given number of threads of the default pool
+	 */
+	public ConcurrentIterable(Iterable<T> iterable, int countThreads)
+	{
+		this(iterable, null, countThreads);
+	}
+	
+	/**
+	 * Use as many threads as the parallelism of the pool
+	 */
+	public ConcurrentIterable(Iterable<T> iterable, ForkJoinPool pool)
+	{
+		this(iterable, pool, pool.getParallelism());
+	}
+	
+	/**
+	 * Use a given number of threads from an executor
+	 * @param executor executor running the threads, or null to use the default pool
+	 */
+	public ConcurrentIterable(Iterable<T> iterable, Executor executor, int countThreads)
+	{
+		this(iterable, executor, countThreads, 0);
+	}
+	
+	/**
+	 * @param nOrderedWindow size of the reorder window in ordered mode, 0 for unordered mode
+	 */
+	private ConcurrentIterable(Iterable<T> iterable, Executor executor, int countThreads, int nOrderedWindow)
+	{
+		if ( countThreads < 1 )
+		{
+			throw new IllegalArgumentException("countThreads must be positive: " + countThreads);
+		}
+		m_iterable = iterable;
+		m_executor = executor;
+		m_countThreads = countThreads;
+		m_nOrderedWindow = nOrderedWindow;
+	}
+	
+	/**
+	 * In ordered mode, the stages of the underlying pipeline run concurrently 
+	 * but the elements are returned in the order of the source. An Iterable 
+	 * without stages has nothing to run concurrently and is iterated directly.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Iterator<T> iterator()
+	{
+		// Stages of a monitored pipeline already record their metrics
+		Iterable<T> iterable = ( m_iterable instanceof MonitoredIterable ) ? ((MonitoredIterable<T>) m_iterable).getIterable() : m_iterable;
+		if ( !isOrdered() || !( iterable instanceof Pipeline ) )
+		{
+			return m_iterable.iterator();
+		}
+		Pipeline<Object, T> pipeline = (Pipeline<Object, T>) iterable;
+		return new OrderedIterator<Object, T>(pipeline.getSource().iterator(), pipeline, getExecutor(), m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * Switches to ordered mode: elements are still processed concurrently, 
+	 * but dump(), join(), each(), inject() and iterator() see them in the 
+	 * order of the source. When the source cannot be split, a window of at most
+	 * DEFAULT_ORDERED_WINDOW elements are processed ahead of the oldest one.
+	 * @return a new ConcurrentIterable in ordered mode
+	 */
+	public ConcurrentIterable<T> ordered()
+	{
+		return ordered(DEFAULT_ORDERED_WINDOW);
+	}
+	
+	/**
+	 * @param nWindow maximum number of elements processed or waiting 
+	 *                to be returned at the same time
+	 * @see #ordered()
+	 */
+	public ConcurrentIterable<T> ordered(int nWindow)
+	{
+		if ( nWindow < 1 )
+		{
+			throw new IllegalArgumentException("nWindow must be positive: " + nWindow);
+		}
+		return new ConcurrentIterable<T>(m_iterable, m_executor, m_countThreads, nWindow);
+	}
+	
+	/**
+	 * @return true if elements are seen in the order of the source
+	 */
+	public boolean isOrdered()
+	{
+		return m_nOrderedWindow > 0;
+	}
+	
+	/**
+	 * Switches to a mode suited to blocking functions like disk or network accesses:
+	 * each worker runs on its own virtual thread, so that many more of them can wait 
+	 * at the same time than there are processors.
+	 * @return a new ConcurrentIterable processing at most DEFAULT_MAX_IN_FLIGHT
+	 *         elements or parts at the same time
+	 * @see VirtualExecutor
+	 */
+	public ConcurrentIterable<T> virtual()
+	{
+		return virtual(DEFAULT_MAX_IN_FLIGHT);
+	}
+	
+	/**
+	 * @param nMaxInFlight maximum number of elements or parts processed at the same time
+	 * @see #virtual()
+	 */
+	public ConcurrentIterable<T> virtual(int nMaxInFlight)
+	{
+		return new ConcurrentIterable<T>(m_iterable, VirtualExecutor.get(), nMaxInFlight, m_nOrderedWindow);
+	}
+	
+	/**
+	 * The mapping runs concurrently, and so will the following operations
+	 */
+	@Override
+	public <V> Iterable<V> map(Function1<V, T> mapper)
+	{
+		return new ConcurrentIterable<V>(m_iterable.map(mapper), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * The expansion runs concurrently, each thread expanding its own elements
+	 * of the source, and so will the following operations
+	 */
+	@Override
+	public <V> Iterable<V> flatMap(Function1<java.lang.Iterable<V>, T> mapper)
+	{
+		return new ConcurrentIterable<V>(m_iterable.flatMap(mapper), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * The mapping runs concurrently, each part of a split source counting 
+	 * from its offset, and so will the following operations
+	 */
+	@Override
+	public <V> Iterable<V> mapWithIndex(IndexedFunction1<V, T> mapper)
+	{
+		return new ConcurrentIterable<V>(m_iterable.mapWithIndex(mapper), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * Stays concurrent, and also records the activity of the workers
+	 */
+	@Override
+	public Iterable<T> monitor(String name)
+	{
+		return new ConcurrentIterable<T>(m_iterable.monitor(name), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * The selection runs concurrently, and so will the following operations
+	 */
+	@Override
+	public Iterable<T> select(Predicate1<T> predicate)
+	{
+		return new ConcurrentIterable<T>(m_iterable.select(predicate), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * The rejection runs concurrently, and so will the following operations
+	 */
+	@Override
+	public Iterable<T> reject(Predicate1<T> predicate)
+	{
+		return new ConcurrentIterable<T>(m_iterable.reject(predicate), m_executor, m_countThreads, m_nOrderedWindow);
+	}
+	
+	/**
+	 * Pushing to a single sink is done sequentially
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return m_iterable.push(sink);
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_iterable.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_iterable.estimateSize();
+	}
+	
+	/**
+	 * In unordered mode, elements are seen in any order: ORDERED and SORTED are lost
+	 */
+	@Override
+	public int characteristics()
+	{
+		int nCharacteristics = m_iterable.characteristics();
+		return isOrdered() ? nCharacteristics : nCharacteristics & ~(ORDERED | SORTED);
+	}
+	
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		return m_iterable.split(nParts);
+	}
+	
+	/**
+	 * Counts concurrently when the size is not known
+	 */
+	@Override
+	public int count() throws FunctionalException
+	{
+		int size = size();
+		if ( size >= 0 )
+		{
+			return size;
+		}
+		return inject(0, new Function2<Integer, Integer, T>()
+		{
+			public Integer call(Integer count, T t)
+			{
+				return count + 1;
+			}
+		}, new Function2<Integer, Integer, Integer>()
+		{
+			public Integer call(Integer count1, Integer count2)
+			{
+				return count1 + count2;
+			}
+		});
+	}
+	
+	/**
+	 * The injecter is called under a lock because it may not be associative,
+	 * only the iteration of the underlying Iterable runs concurrently.
+	 * Use inject(identity, injecter, combiner) to also run the injection concurrently.
+	 */
+	@Override
+	public <V> V inject(V value, Function2<V, V, T> injecter) throws FunctionalException
+	{
+		injecter = monitor(injecter);
+		if ( isOrdered() )
+		{
+			return injectWithIterator(iterator(), value, injecter);
+		}
+		return injectShared(new SharedResult<V>(value, false), injecter);
+	}
+	
+	/**
+	 * The injecter is called under a lock because it may not be associative,
+	 * only the iteration of the underlying Iterable runs concurrently.
+	 */
+	@Override
+	public T inject(Function2<T, T, T> injecter) throws FunctionalException
+	{
+		injecter = monitor(injecter);
+		if ( isOrdered() )
+		{
+			return super.inject(injecter);
+		}
+		return injectShared(new SharedResult<T>(null, true), injecter);
+	}
+	
+	/**
+	 * Every thread injects its elements in its own partial result, starting from identity
+	 * and without any lock. Partial results are then merged with the combiner, in iteration 
+	 * order when the underlying Iterable can be split.
+	 */
+	@Override
+	public <V> V inject(V identity, Function2<V, V, T> injecter, Function2<V, V, V> combiner) throws FunctionalException
+	{
+		injecter = monitor(injecter);
+		List<Part<T>> parts = openParts();
+		if ( parts == null )
+		{
+			return injectWithIterator(iterator(), identity, injecter);
+		}
+		List<Callable<V>> workers = new ArrayList<Callable<V>>(parts.size());
+		for ( Part<T> part : parts )
+		{
+			workers.add(new PartialInjection<V, T>(part, identity, injecter));
+		}
+		List<V> partials = execute(workers);
+		V result = partials.get(0);
+		for ( int i = 1; i < partials.size(); i += 1 )
+		{
+			result = combiner.call(result, partials.get(i));
+		}
+		return result;
+	}
+	
+	/**
+	 * In ordered mode, the elements processed ahead are cancelled
+	 * when the injecter throws
+	 */
+	@Override
+	protected <V> V injectWithIterator(Iterator<T> it, V value, Function2<V, V, T> injecter) throws FunctionalException
+	{
+		try
+		{
+			return super.injectWithIterator(it, value, injecter);
+		}
+		finally
+		{
+			cancel(it);
+		}
+	}
+	
+	/**
+	 * Every thread stops as soon as one of them finds an element
+	 */
+	@Override
+	public boolean any(final Predicate1<T> predicate) throws FunctionalException
+	{
+		return search(predicate) != null;
+	}
+
+	/**
+	 * Every thread stops as soon as one of them finds an element
+	 * which does not satisfy the predicate
+	 */
+	@Override
+	public boolean all(final Predicate1<T> predicate) throws FunctionalException 
+	{
+		return search(new NotPredicate1<T>(predicate)) == null;
+	}
+	
+	/**
+	 * In ordered mode, the elements processed ahead of the first one are cancelled
+	 */
+	@Override
+	public T first() throws FunctionalException
+	{
+		Iterator<T> it = iterator();
+		try
+		{
+			return it.hasNext() ? it.next() : null;
+		}
+		finally
+		{
+			cancel(it);
+		}
+	}
+	
+	/**
+	 * When the underlying Iterable can be split, threads stop as soon as 
+	 * an element has been found in a previous part, and the first element
+	 * is returned. Otherwise every thread stops as soon as one of them 
+	 * finds an element, which may not be the first one.
+	 */
+	@Override
+	public T first(Predicate1<T> predicate) throws FunctionalException
+	{
+		if ( isOrdered() && m_iterable.split(m_countThreads) == null )
+		{
+			// Test the predicate concurrently, but in order
+			return select(predicate).first();
+		}
+		Match<T> match = search(predicate);
+		return ( match == null ) ? null : match.m_value;
+	}
+	
+	/**
+	 * Calls the procedure concurrently, in no particular order.
+	 * In ordered mode, the procedure is called in order by the calling thread,
+	 * while the stages of the underlying pipeline run concurrently.
+	 */
+	@Override
+	public void each(final Procedure1<T> procedure) throws FunctionalException
+	{
+		if ( isOrdered() )
+		{
+			Iterator<T> it = iterator();
+			try
+			{
+				while ( it.tryAdvance(procedure) )
+				{
+				}
+			}
+			finally
+			{
+				cancel(it);
+			}
+			return;
+		}
+		inject(null, new Function2<Void, Void, T>() 
+		{
+			public Void call(Void unused, T value) throws FunctionalException 
+			{
+				procedure.call(value);
+				return null;
+			}
+		}, new Function2<Void, Void, Void>()
+		{
+			public Void call(Void unused1, Void unused2)
+			{
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Every thread dumps its elements in its own list, 
+	 * lists are then appended to the collection
+	 */
+	@Override
+	public <C extends Collection<T>> C dump(C collection) throws FunctionalException
+	{
+		List<T> list = inject(null, new Function2<List<T>, List<T>, T>()
+		{
+			public List<T> call(List<T> list, T t)
+			{
+				if ( list == null )
+				{
+					list = new ArrayList<T>();
+				}
+				list.add(t);
+				return list;
+			}
+		}, new Function2<List<T>, List<T>, List<T>>()
+		{
+			public List<T> call(List<T> list1, List<T> list2)
+			{
+				if ( list1 == null )
+				{
+					return list2;
+				}
+				if ( list2 != null )
+				{
+					list1.addAll(list2);
+				}
+				return list1;
+			}
+		});
+		if ( list != null )
+		{
+			collection.addAll(list);
+		}
+		return collection;
+	}
+	
+	/**
+	 * Every thread encodes its elements in its own buffers. When unordered, 
+	 * full buffers are written as soon as possible; when ordered, buffers of
+	 * each part are written once every previous part has been written.
+	 */
+	@Override
+	public long writeTo(Path path, Encoder<T> encoder) throws FunctionalException
+	{
+		List<Part<T>> parts = openParts();
+		if ( parts == null )
+		{
+			return super.writeTo(path, encoder);
+		}
+		try
+		{
+			FileOutput output = new FileOutput(path);
+			try
+			{
+				List<Callable<Void>> workers = new ArrayList<Callable<Void>>(parts.size());
+				for ( Part<T> part : parts )
+				{
+					workers.add(new Writing<T>(part, output.sink(encoder, isOrdered() ? part.m_nIndex : -1)));
+				}
+				execute(workers);
+				return output.getBytesWritten();
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new FunctionalException(e);
+		}
+	}
+	
+	/**
+	 * Every thread joins its elements in its own segment, then segments are
+	 * concatenated in a buffer of their total length. Segments follow the
+	 * order of the source when it can be split, otherwise in ordered mode 
+	 * elements are written in order like join(separator, out).
+	 */
+	@Override
+	public String join(String separator) throws FunctionalException
+	{
+		List<Part<T>> parts = openParts();
+		if ( parts == null )
+		{
+			return join(separator, new StringBuilder()).toString();
+		}
+		List<Callable<StringBuilder>> workers = new ArrayList<Callable<StringBuilder>>(parts.size());
+		for ( Part<T> part : parts )
+		{
+			workers.add(new Segment<T>(part, separator));
+		}
+		List<StringBuilder> segments = execute(workers);
+		int length = 0;
+		int count = 0;
+		for ( StringBuilder segment : segments )
+		{
+			if ( segment != null )
+			{
+				length += segment.length();
+				count += 1;
+			}
+		}
+		StringBuilder sb = new StringBuilder(length + Math.max(0, count - 1) * separator.length());
+		boolean bFirst = true;
+		for ( StringBuilder segment : segments )
+		{
+			if ( segment != null )
+			{
+				if ( !bFirst )
+				{
+					sb.append(separator);
+				}
+				bFirst = false;
+				sb.append(segment);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Segments of elements are joined concurrently, while the calling thread 
+	 * writes them in the order of the source as soon as they are ready. 
+	 * At most two segments per thread are waiting to be written, so that 
+	 * the whole text is never held in memory. When the source cannot be split,
+	 * each element is a segment.
+	 */
+	@Override
+	public <A extends Appendable> A join(final String separator, A out) throws FunctionalException
+	{
+		int size = m_iterable.size();
+		int nSegments = Math.max(m_countThreads * SEGMENTS_PER_THREAD, size / ELEMENTS_PER_SEGMENT);
+		List<Iterable<T>> parts = m_iterable.split(nSegments);
+		ConcurrentIterable<CharSequence> segments;
+		if ( parts == null )
+		{
+			segments = new ConcurrentIterable<CharSequence>(m_iterable.map(new Function1<CharSequence, T>()
+			{
+				public CharSequence call(T value)
+				{
+					return String.valueOf(value);
+				}
+			}), m_executor, m_countThreads, isOrdered() ? m_nOrderedWindow : DEFAULT_ORDERED_WINDOW);
+		}
+		else
+		{
+			segments = new ConcurrentIterable<CharSequence>(Iterable.wrap(parts).map(new Function1<CharSequence, Iterable<T>>()
+			{
+				public CharSequence call(Iterable<T> part) throws FunctionalException
+				{
+					final StringBuilder[] segment = new StringBuilder[1];
+					part.push(new Sink<T>()
+					{
+						public boolean accept(T value)
+						{
+							segment[0] = append(segment[0], separator, value);
+							return true;
+						}
+					});
+					return segment[0];
+				}
+			}), m_executor, m_countThreads, m_countThreads * 2);
+		}
+		final Appendable writer = out;
+		Iterator<CharSequence> it = segments.iterator();
+		Procedure1<CharSequence> write = new Procedure1<CharSequence>()
+		{
+			private boolean m_bFirst = true;
+			
+			public Void call(CharSequence segment) throws FunctionalException
+			{
+				// An empty part gives no segment, and needs no separator
+				if ( segment == null )
+				{
+					return null;
+				}
+				try
+				{
+					if ( !m_bFirst )
+					{
+						writer.append(separator);
+					}
+					m_bFirst = false;
+					writer.append(segment);
+				}
+				catch ( IOException e )
+				{
+					throw new FunctionalException(e);
+				}
+				return null;
+			}
+		};
+		try
+		{
+			while ( it.tryAdvance(write) )
+			{
+			}
+		}
+		finally
+		{
+			cancel(it);
+		}
+		return out;
+	}
+	
+	/**
+	 * Appends an element to a segment
+	 * @param segment the segment, or null if this is its first element
+	 * @return the segment
+	 */
+	private static StringBuilder append(StringBuilder segment, String separator, Object value)
+	{
+		return ( segment == null ) ? new StringBuilder().append(value) : segment.append(separator).append(value);
+	}
+	
+	/**
+	 * When the underlying Iterable can be split, give each thread 
+	 * its own contiguous part instead of making them all share one 
+	 * synchronized iterator. When it cannot be split but is a chain of 
+	 * pipelines and flatMaps, only its source is shared and the stages 
+	 * run concurrently.
+	 * @return the elements to iterate on for each thread, or null in ordered 
+	 *         mode when the Iterable cannot be split: the ordered iterator must be 
+	 *         used instead
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Part<T>> openParts()
+	{
+		List<Iterable<T>> iterables = m_iterable.split(m_countThreads);
+		if ( iterables == null && isOrdered() )
+		{
+			return null;
+		}
+		if ( iterables != null )
+		{
+			List<Part<T>> parts = new ArrayList<Part<T>>(iterables.size());
+			for ( int i = 0; i < iterables.size(); i += 1 )
+			{
+				parts.add(new SplitPart<T>(iterables.get(i), i));
+			}
+			return parts;
+		}
+		// Stages of a monitored pipeline already record their metrics
+		Iterable<T> iterable = ( m_iterable instanceof MonitoredIterable ) ? ((MonitoredIterable<T>) m_iterable).getIterable() : m_iterable;
+		Iterable<?> source = iterable;
+		while ( isStage(source) )
+		{
+			source = ( source instanceof Pipeline ) ? ((Pipeline<?, ?>) source).getSource() : ((FlatMap<?, ?>) source).getSource();
+		}
+		Part<T> shared = new SharedPart<Object, T>((Iterator<Object>) source.iterator().synchronizedIterator(), iterable, getWorkerMetrics());
+		return Collections.nCopies(m_countThreads, shared);
+	}
+	
+	/**
+	 * @return true if the Iterable transforms the elements of a source 
+	 *         which can be taken separately, so that its stages run outside
+	 *         of the lock of a shared iterator
+	 */
+	private static boolean isStage(Iterable<?> iterable)
+	{
+		return ( iterable instanceof Pipeline ) || ( iterable instanceof FlatMap );
+	}
+	
+	/**
+	 * @return the first match in iteration order, or null if nothing was found
+	 */
+	private Match<T> search(Predicate1<T> predicate) throws FunctionalException
+	{
+		List<Part<T>> parts = isOrdered() ? unordered().openParts() : openParts();
+		List<Callable<Match<T>>> workers = new ArrayList<Callable<Match<T>>>(parts.size());
+		AtomicInteger foundIndex = new AtomicInteger(Integer.MAX_VALUE);
+		for ( Part<T> part : parts )
+		{
+			workers.add(new Search<T>(part, predicate, foundIndex));
+		}
+		for ( Match<T> match : execute(workers) )
+		{
+			if ( match != null )
+			{
+				return match;
+			}
+		}
+		return null;
+	}
+	
+	private ConcurrentIterable<T> unordered()
+	{
+		return new ConcurrentIterable<T>(m_iterable, m_executor, m_countThreads, 0);
+	}
+	
+	private <V> V injectShared(SharedResult<V> result, Function2<V, V, T> injecter) throws FunctionalException
+	{
+		List<Part<T>> parts = openParts();
+		List<Callable<V>> workers = new ArrayList<Callable<V>>(parts.size());
+		for ( Part<T> part : parts )
+		{
+			workers.add(new SharedInjection<V, T>(part, result, injecter));
+		}
+		execute(workers);
+		return result.m_value;
+	}
+	
+	/**
+	 * Runs every worker on its own thread and waits for all of them.
+	 * The calling thread runs the first worker, then runs itself the
+	 * workers that no thread of the executor has started yet,
+	 * so that nested concurrent iterations cannot starve the executor,
+	 * nor a default pool shut down by DefaultExecutor.configure().
+	 * When a worker fails, the others are interrupted and waited for before
+	 * the error is thrown, so that they do not keep running after the call
+	 * returns or use what the caller releases then.
+	 * @return the result of every worker, in the same order
+	 */
+	private <V> List<V> execute(List<Callable<V>> workers) throws FunctionalException
+	{
+		Executor executor = getExecutor();
+		WorkerMetrics metrics = getWorkerMetrics();
+		long nStart = ( metrics != null ) ? System.nanoTime() : 0;
+		List<WorkerTask<V>> futures = new ArrayList<WorkerTask<V>>(workers.size());
+		for ( Callable<V> worker : workers )
+		{
+			futures.add(new WorkerTask<V>(( metrics != null ) ? new TimedWorker<V>(worker, metrics) : worker));
+		}
+		try
+		{
+			for ( int i = 1; i < futures.size(); i += 1 )
+			{
+				executor.execute(futures.get(i));
+			}
+		}
+		catch ( RejectedExecutionException e )
+		{
+			// The calling thread runs the workers left
+		}
+		try
+		{
+			List<V> results = new ArrayList<V>(futures.size());
+			for ( WorkerTask<V> future : futures )
+			{
+				future.run();
+				results.add(future.get());
+			}
+			return results;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new FunctionalException(e);
+		}
+		catch ( ExecutionException e )
+		{
+			throw unwrap(e.getCause());
+		}
+		finally
+		{
+			boolean bInterrupted = false;
+			for ( WorkerTask<V> future : futures )
+			{
+				bInterrupted |= future.stop();
+			}
+			if ( bInterrupted )
+			{
+				Thread.currentThread().interrupt();
+			}
+			if ( metrics != null )
+			{
+				metrics.recordExecution(futures.size(), System.nanoTime() - nStart);
+			}
+		}
+	}
+	
+	/**
+	 * @return the injecter recording its metrics when this Iterable is monitored
+	 */
+	@SuppressWarnings("unchecked")
+	private <V> Function2<V, V, T> monitor(Function2<V, V, T> injecter)
+	{
+		return ( m_iterable instanceof MonitoredIterable ) ? ((MonitoredIterable<T>) m_iterable).monitor(injecter) : injecter;
 	}
 	
-	public ConcurrentIterable(Iterable<T> iterable, int countThreads)
+	/**
+	 * @return the metrics of the workers when this Iterable is monitored, null otherwise
+	 */
+	private WorkerMetrics getWorkerMetrics()
 	{
-		m_iterable = iterable;
-		m_countThreads = countThreads;
+		return ( m_iterable instanceof MonitoredIterable ) ? ((MonitoredIterable<T>) m_iterable).getMetrics().getWorkers() : null;
 	}
 	
-	@Override
-	public Iterator<T> iterator()
+	private Executor getExecutor()
 	{
-		return m_iterable.iterator();
+		return ( m_executor == null ) ? DefaultExecutor.get() : m_executor;
 	}
 	
 	/**
-	 * Override the implementation of inject in order to run concurrently every algorithm
-	 * based on it: any(), all(), dump(), join(), etc.
+	 * Gives back the exception thrown by a worker thread to the calling thread
 	 */
-	@Override
-	protected <V> V injectWithIterator(Iterator<T> it, V value, Function2<V, V,T> injecter) 
+	/**
+	 * Stops the elements an ordered iterator processes ahead of the last one
+	 * read, when the iteration ends before the iterator. Does nothing once 
+	 * the iterator has reached its end.
+	 */
+	private static void cancel(Iterator<?> it)
 	{
-		ExecutorService executor = Executors.newFixedThreadPool(m_countThreads);
-		for ( int i = 0; i < m_countThreads; i += 1 ) 
+		if ( it instanceof OrderedIterator )
 		{
-			executor.execute(new Iteration<V, T>(injecter, value, it));
+			((OrderedIterator<?, ?>) it).cancel();
 		}
-		executor.shutdown();
-		
-		try
+	}
+	
+	private static FunctionalException unwrap(Throwable t)
+	{
+		if ( t instanceof FunctionalRuntimeException && t.getCause() instanceof FunctionalException )
 		{
-			executor.awaitTermination(365, TimeUnit.DAYS); // Infinite ?
+			return (FunctionalException) t.getCause();
 		}
-		catch ( InterruptedException e )
+		if ( t instanceof FunctionalException )
+		{
+			return (FunctionalException) t;
+		}
+		if ( t instanceof RuntimeException )
 		{
-			// Nothing?
+			throw (RuntimeException) t;
 		}
-		return value;
+		if ( t instanceof Error )
+		{
+			throw (Error) t;
+		}
+		return new FunctionalException(t);
 	}
 	
-	private static class Iteration<V, T> implements Runnable
+	/**
+	 * Elements iterated by one thread
+	 */
+	private static abstract class Part<T>
 	{
-		private Function2<V, V, T> m_injecter;
-		private V m_result;
-		private Iterator<T> m_iterator;
+		/**
+		 * Index of the part in iteration order, -1 if shared by all threads
+		 */
+		protected final int m_nIndex;
+		
+		protected Part(int nIndex)
+		{
+			m_nIndex = nIndex;
+		}
+		
+		abstract boolean push(Sink<T> sink) throws FunctionalException;
+	}
 	
-		private Iteration(Function2<V, V, T> injecter, V result, Iterator<T> iterator)
+	/**
+	 * A part of a split Iterable, only iterated by one thread
+	 */
+	private static class SplitPart<T> extends Part<T>
+	{
+		private Iterable<T> m_iterable;
+		
+		private SplitPart(Iterable<T> iterable, int nIndex)
 		{
-			m_injecter = injecter;
-			m_result = result;
-			m_iterator = iterator;
+			super(nIndex);
+			m_iterable = iterable;
+		}
+		
+		@Override
+		boolean push(Sink<T> sink) throws FunctionalException
+		{
+			return m_iterable.push(sink);
 		}
+	}
 	
-		public void run()
+	/**
+	 * Elements taken from an iterator shared by every thread, then transformed
+	 * by the stages of pipelines and flatMaps outside of the lock
+	 */
+	private static class SharedPart<S, T> extends Part<T>
+	{
+		private Iterator<S> m_iterator;
+		private Iterable<T> m_chain;
+		private WorkerMetrics m_metrics;
+		
+		/**
+		 * @param iterator shared iterator on the source of the chain
+		 * @param chain stages to run on each element, down to the source,
+		 *              or the source itself if S is T
+		 * @param metrics metrics recording the lock wait time, or null
+		 */
+		private SharedPart(Iterator<S> iterator, Iterable<T> chain, WorkerMetrics metrics)
+		{
+			super(-1);
+			m_iterator = iterator;
+			m_chain = chain;
+			m_metrics = metrics;
+		}
+		
+		/**
+		 * @return a sink running every stage of the chain, from its source, before the given sink
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Sink<S> wrap(Sink<T> sink)
 		{
-			while( true )
+			Sink stages = sink;
+			Iterable<?> chain = m_chain;
+			while ( isStage(chain) )
 			{
-				try
+				if ( chain instanceof Pipeline )
+				{
+					stages = ((Pipeline) chain).wrap(stages);
+					chain = ((Pipeline<?, ?>) chain).getSource();
+				}
+				else
+				{
+					stages = ((FlatMap) chain).wrap(stages);
+					chain = ((FlatMap<?, ?>) chain).getSource();
+				}
+			}
+			return stages;
+		}
+		
+		private int nextBatch(Object[] buffer)
+		{
+			if ( m_metrics == null )
+			{
+				return m_iterator.nextBatch(buffer);
+			}
+			long nStart = System.nanoTime();
+			int count = m_iterator.nextBatch(buffer);
+			m_metrics.recordLockWait(System.nanoTime() - nStart);
+			return count;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		boolean push(Sink<T> sink) throws FunctionalException
+		{
+			Sink<S> stages = wrap(sink);
+			// One lock acquisition per batch. Batches start small so that 
+			// a few expensive elements still spread over every thread.
+			Object[] buffer = new Object[1];
+			int count;
+			while ( (count = nextBatch(buffer)) > 0 )
+			{
+				for ( int i = 0; i < count; i += 1 )
 				{
-					T next = m_iterator.next();
-					synchronized( m_result )
+					if ( !stages.accept((S) buffer[i]) )
 					{
-						try
-						{
-							m_result = m_injecter.call(m_result, next);
-						}
-						catch ( FunctionalRuntimeException e ) 
-						{
-							throw e;
-						}
-						catch ( Exception e ) 
-						{
-							throw new FunctionalRuntimeException(e);
-						}
+						return false;
 					}
 				}
-				catch ( NoSuchElementException e )
+				if ( buffer.length < MAX_SHARED_BATCH )
+				{
+					buffer = new Object[buffer.length * 2];
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Pushes the elements of a part into itself from a thread
+	 */
+	private static abstract class Worker<V, T> implements Callable<V>, Sink<T>
+	{
+		protected final Part<T> m_part;
+		
+		protected Worker(Part<T> part)
+		{
+			m_part = part;
+		}
+		
+		/**
+		 * Stops pushing once the thread is interrupted by execute()
+		 */
+		public V call() throws FunctionalException
+		{
+			m_part.push(new Sink<T>()
+			{
+				public boolean accept(T t) throws FunctionalException
+				{
+					return !Thread.currentThread().isInterrupted() && Worker.this.accept(t);
+				}
+			});
+			return getResult();
+		}
+		
+		protected abstract V getResult();
+	}
+	
+	/**
+	 * A worker which can be stopped, waiting for the end of its run if it
+	 * has already started
+	 */
+	private static class WorkerTask<V> extends FutureTask<V>
+	{
+		private static final int WAITING = 0;
+		private static final int RUNNING = 1;
+		private static final int STOPPED = 2;
+		
+		private final AtomicInteger m_nState = new AtomicInteger(WAITING);
+		
+		private WorkerTask(Callable<V> worker)
+		{
+			super(worker);
+		}
+		
+		@Override
+		public void run()
+		{
+			if ( !m_nState.compareAndSet(WAITING, RUNNING) )
+			{
+				return;
+			}
+			try
+			{
+				super.run();
+			}
+			finally
+			{
+				synchronized ( this )
+				{
+					m_nState.set(STOPPED);
+					notifyAll();
+				}
+			}
+		}
+		
+		/**
+		 * Cancels the worker, interrupting it if it is running, 
+		 * and waits for it to stop
+		 * @return true if the calling thread was interrupted while waiting
+		 */
+		private boolean stop()
+		{
+			if ( m_nState.compareAndSet(WAITING, STOPPED) )
+			{
+				cancel(false);
+				return false;
+			}
+			cancel(true);
+			boolean bInterrupted = false;
+			synchronized ( this )
+			{
+				while ( m_nState.get() != STOPPED )
 				{
-					break;
+					try
+					{
+						wait();
+					}
+					catch ( InterruptedException e )
+					{
+						bInterrupted = true;
+					}
 				}
 			}
+			return bInterrupted;
+		}
+	}
+	
+	/**
+	 * Records the time a worker spends running
+	 */
+	private static class TimedWorker<V> implements Callable<V>
+	{
+		private Callable<V> m_worker;
+		private WorkerMetrics m_metrics;
+		
+		private TimedWorker(Callable<V> worker, WorkerMetrics metrics)
+		{
+			m_worker = worker;
+			m_metrics = metrics;
+		}
+		
+		public V call() throws Exception
+		{
+			long nStart = System.nanoTime();
+			try
+			{
+				return m_worker.call();
+			}
+			finally
+			{
+				m_metrics.recordBusy(System.nanoTime() - nStart);
+			}
+		}
+	}
+	
+	private static class SharedResult<V>
+	{
+		private V m_value;
+		private boolean m_bEmpty;
+		
+		/**
+		 * @param bEmpty true if the first element must be used as initial value
+		 */
+		private SharedResult(V value, boolean bEmpty)
+		{
+			m_value = value;
+			m_bEmpty = bEmpty;
+		}
+	}
+	
+	/**
+	 * Injects elements in a result shared with other threads
+	 */
+	private static class SharedInjection<V, T> extends Worker<V, T>
+	{
+		private SharedResult<V> m_result;
+		private Function2<V, V, T> m_injecter;
+		
+		private SharedInjection(Part<T> part, SharedResult<V> result, Function2<V, V, T> injecter)
+		{
+			super(part);
+			m_result = result;
+			m_injecter = injecter;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public boolean accept(T t) throws FunctionalException
+		{
+			synchronized ( m_result )
+			{
+				m_result.m_value = m_result.m_bEmpty ? (V) t : m_injecter.call(m_result.m_value, t);
+				m_result.m_bEmpty = false;
+			}
+			return true;
+		}
+		
+		@Override
+		protected V getResult()
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Injects elements in a partial result owned by the current thread
+	 */
+	private static class PartialInjection<V, T> extends Worker<V, T>
+	{
+		private V m_result;
+		private Function2<V, V, T> m_injecter;
+		
+		private PartialInjection(Part<T> part, V identity, Function2<V, V, T> injecter)
+		{
+			super(part);
+			m_result = identity;
+			m_injecter = injecter;
+		}
+		
+		public boolean accept(T t) throws FunctionalException
+		{
+			m_result = m_injecter.call(m_result, t);
+			return true;
+		}
+		
+		@Override
+		protected V getResult()
+		{
+			return m_result;
+		}
+	}
+	
+	/**
+	 * Joins the elements of a part in its own buffer
+	 */
+	private static class Segment<T> extends Worker<StringBuilder, T>
+	{
+		private String m_separator;
+		private StringBuilder m_segment = null;
+		
+		private Segment(Part<T> part, String separator)
+		{
+			super(part);
+			m_separator = separator;
+		}
+		
+		public boolean accept(T t)
+		{
+			m_segment = append(m_segment, m_separator, t);
+			return true;
+		}
+		
+		/**
+		 * @return the joined elements, or null if the part has none
+		 */
+		@Override
+		protected StringBuilder getResult()
+		{
+			return m_segment;
+		}
+	}
+	
+	private static class Writing<T> extends Worker<Void, T>
+	{
+		private EncodingSink<T> m_sink;
+		
+		private Writing(Part<T> part, EncodingSink<T> sink)
+		{
+			super(part);
+			m_sink = sink;
+		}
+		
+		public boolean accept(T t) throws FunctionalException
+		{
+			return m_sink.accept(t);
+		}
+		
+		@Override
+		public Void call() throws FunctionalException
+		{
+			super.call();
+			// A worker stopped by execute() leaves its part unfinished
+			if ( !Thread.currentThread().isInterrupted() )
+			{
+				m_sink.finish();
+			}
+			return null;
+		}
+		
+		@Override
+		protected Void getResult()
+		{
+			return null;
+		}
+	}
+	
+	private static class Match<T>
+	{
+		private T m_value;
+		
+		private Match(T value)
+		{
+			m_value = value;
+		}
+	}
+	
+	/**
+	 * Searches for an element until one is found by this thread or by 
+	 * a thread iterating on a previous part
+	 */
+	private static class Search<T> extends Worker<Match<T>, T>
+	{
+		private Predicate1<T> m_predicate;
+		private AtomicInteger m_foundIndex;
+		private Match<T> m_match;
+		
+		/**
+		 * @param foundIndex lowest index of the parts where an element was found
+		 */
+		private Search(Part<T> part, Predicate1<T> predicate, AtomicInteger foundIndex)
+		{
+			super(part);
+			m_predicate = predicate;
+			m_foundIndex = foundIndex;
+		}
+		
+		public boolean accept(T t) throws FunctionalException
+		{
+			if ( m_foundIndex.get() <= m_part.m_nIndex )
+			{
+				return false;
+			}
+			if ( !m_predicate.call(t) )
+			{
+				return true;
+			}
+			m_match = new Match<T>(t);
+			int nFoundIndex = m_foundIndex.get();
+			while ( m_part.m_nIndex < nFoundIndex && !m_foundIndex.compareAndSet(nFoundIndex, m_part.m_nIndex) )
+			{
+				nFoundIndex = m_foundIndex.get();
+			}
+			return false;
+		}
+		
+		@Override
+		protected Match<T> getResult()
+		{
+			return m_match;
 		}
 	}
 
@@ -167,7 +1426,7 @@ public class ConcurrentIterable<T> extends Iterable<T>
 			{
 				try
 				{
-					it.concurrently().dump(list2);
+					it.concurrently().ordered().dump(list2);
 				}
 				catch ( FunctionalException e )
 				{
@@ -179,9 +1438,6 @@ public class ConcurrentIterable<T> extends Iterable<T>
 		double diff = (timeMultiThreaded - timeSingleThreaded) / (double)timeSingleThreaded;
 		System.out.println("multi-threaded:  " + timeMultiThreaded + " (" + String.format("%.3f", diff) +  ")");
 		
-		Collections.sort(list1);
-		Collections.sort(list2);
-		
 		if ( list1.equals(list2) )
 		{
 			return;
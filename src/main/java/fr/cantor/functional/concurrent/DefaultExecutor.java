@@ -0,0 +1,103 @@
+package fr.cantor.functional.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide thread pool used by ConcurrentIterable when no executor is given.
+ * The pool is created once, its threads are started at once and stay alive, 
+ * so that many small concurrent iterations do not pay for thread creation.
+ * By default it has one daemon thread per available processor.
+ */
+public final class DefaultExecutor
+{
+	private static int s_countThreads = Runtime.getRuntime().availableProcessors();
+	private static String s_threadNamePrefix = "functional-worker-";
+	private static boolean s_bDaemon = true;
+	private static ExecutorService s_executor;
+	
+	private DefaultExecutor()
+	{
+	}
+	
+	/**
+	 * Changes the configuration of the default pool.
+	 * The current pool, if any, is shut down once its pending tasks are done 
+	 * and a new one is created on next use. Iterations still holding the
+	 * previous pool run the tasks it rejects on their calling thread.
+	 * 
+	 * @param countThreads
+	 *            number of threads of the pool
+	 * @param threadNamePrefix
+	 *            prefix of the thread names, followed by the thread number
+	 * @param bDaemon
+	 *            true to create daemon threads which do not prevent the JVM 
+	 *            from exiting
+	 */
+	public static synchronized void configure(int countThreads, String threadNamePrefix, boolean bDaemon)
+	{
+		if ( countThreads < 1 )
+		{
+			throw new IllegalArgumentException("countThreads must be positive: " + countThreads);
+		}
+		s_countThreads = countThreads;
+		s_threadNamePrefix = threadNamePrefix;
+		s_bDaemon = bDaemon;
+		if ( s_executor != null )
+		{
+			s_executor.shutdown();
+			s_executor = null;
+		}
+	}
+	
+	/**
+	 * @return the number of threads of the default pool
+	 */
+	public static synchronized int getCountThreads()
+	{
+		return s_countThreads;
+	}
+	
+	/**
+	 * @return the default pool, created on first call
+	 */
+	public static synchronized ExecutorService get()
+	{
+		if ( s_executor == null )
+		{
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(s_countThreads, s_countThreads, 
+					0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), 
+					new NamedThreadFactory(s_threadNamePrefix, s_bDaemon));
+			executor.prestartAllCoreThreads();
+			s_executor = executor;
+		}
+		return s_executor;
+	}
+	
+	/**
+	 * Creates threads named with a prefix and a sequence number
+	 */
+	static class NamedThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger m_count = new AtomicInteger();
+		private final String m_prefix;
+		private final boolean m_bDaemon;
+		
+		NamedThreadFactory(String prefix, boolean bDaemon)
+		{
+			m_prefix = prefix;
+			m_bDaemon = bDaemon;
+		}
+		
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, m_prefix + m_count.incrementAndGet());
+			thread.setDaemon(m_bDaemon);
+			return thread;
+		}
+	}
+}
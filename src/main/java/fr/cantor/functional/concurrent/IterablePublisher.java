@@ -0,0 +1,175 @@
+package fr.cantor.functional.concurrent;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * Publishes the elements of an Iterable to reactive subscribers.
+ * Each subscription iterates the Iterable once, from the executor, and only
+ * computes as many elements as the subscriber requested: when it stops
+ * requesting, the iteration pauses without holding any thread.
+ * Errors of the iteration are given to onError().
+ *
+ * @param <T>
+ *            Type of the published elements
+ * @see Iterable#publisher()
+ */
+public class IterablePublisher<T> implements Flow.Publisher<T>
+{
+	private Iterable<T> m_iterable;
+	private Executor m_executor;
+	
+	/**
+	 * Iterates on the threads of VirtualExecutor
+	 */
+	public IterablePublisher(Iterable<T> iterable)
+	{
+		this(iterable, null);
+	}
+	
+	/**
+	 * @param executor executor running the iterations, or null to use VirtualExecutor
+	 */
+	public IterablePublisher(Iterable<T> iterable, Executor executor)
+	{
+		m_iterable = iterable;
+		m_executor = executor;
+	}
+	
+	public void subscribe(Flow.Subscriber<? super T> subscriber)
+	{
+		if ( subscriber == null )
+		{
+			throw new NullPointerException("subscriber");
+		}
+		Subscription<T> subscription = new Subscription<T>(m_iterable, subscriber, ( m_executor == null ) ? VirtualExecutor.get() : m_executor);
+		subscriber.onSubscribe(subscription);
+	}
+	
+	/**
+	 * Emits elements while there is demand. Requests only schedule an emission
+	 * when none is running, so the subscriber is called by one thread at once.
+	 */
+	private static class Subscription<T> implements Flow.Subscription, Runnable
+	{
+		private final Iterable<T> m_iterable;
+		private final Flow.Subscriber<? super T> m_subscriber;
+		private final Executor m_executor;
+		private final AtomicLong m_demand = new AtomicLong();
+		// Number of requests since the emission started, the emission runs until it goes back to 0
+		private final AtomicInteger m_pending = new AtomicInteger();
+		private volatile boolean m_bCancelled = false;
+		private volatile IllegalArgumentException m_invalidRequest;
+		private Iterator<T> m_iterator;
+		private boolean m_bDone = false;
+		
+		private Subscription(Iterable<T> iterable, Flow.Subscriber<? super T> subscriber, Executor executor)
+		{
+			m_iterable = iterable;
+			m_subscriber = subscriber;
+			m_executor = executor;
+		}
+		
+		public void request(long n)
+		{
+			if ( n <= 0 )
+			{
+				m_invalidRequest = new IllegalArgumentException("Requests must be positive: " + n);
+			}
+			else
+			{
+				long nDemand;
+				do
+				{
+					nDemand = m_demand.get();
+				}
+				while ( !m_demand.compareAndSet(nDemand, ( nDemand + n < 0 ) ? Long.MAX_VALUE : nDemand + n) );
+			}
+			if ( m_pending.getAndIncrement() == 0 )
+			{
+				m_executor.execute(this);
+			}
+		}
+		
+		public void cancel()
+		{
+			m_bCancelled = true;
+		}
+		
+		public void run()
+		{
+			int nPending = 1;
+			do
+			{
+				emit();
+				nPending = m_pending.addAndGet(-nPending);
+			}
+			while ( nPending != 0 );
+		}
+		
+		private void emit()
+		{
+			if ( m_bDone )
+			{
+				return;
+			}
+			if ( m_invalidRequest != null )
+			{
+				m_bDone = true;
+				m_subscriber.onError(m_invalidRequest);
+				return;
+			}
+			long nEmitted = 0;
+			long nDemand = m_demand.get();
+			while ( !m_bCancelled )
+			{
+				if ( nEmitted == nDemand )
+				{
+					nDemand = m_demand.addAndGet(-nEmitted);
+					nEmitted = 0;
+					if ( nDemand == 0 )
+					{
+						return;
+					}
+				}
+				T t;
+				try
+				{
+					if ( m_iterator == null )
+					{
+						m_iterator = m_iterable.iterator();
+					}
+					if ( !m_iterator.hasNext() )
+					{
+						m_bDone = true;
+						m_subscriber.onComplete();
+						return;
+					}
+					t = m_iterator.next();
+				}
+				catch ( FunctionalRuntimeException e )
+				{
+					m_bDone = true;
+					m_subscriber.onError(( e.getCause() instanceof FunctionalException ) ? e.getCause() : e);
+					return;
+				}
+				catch ( RuntimeException e )
+				{
+					m_bDone = true;
+					m_subscriber.onError(e);
+					return;
+				}
+				m_subscriber.onNext(t);
+				nEmitted += 1;
+			}
+			m_bDone = true;
+		}
+	}
+}
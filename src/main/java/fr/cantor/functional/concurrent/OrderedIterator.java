@@ -0,0 +1,248 @@
+package fr.cantor.functional.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Pipeline;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * Runs the stages of a pipeline concurrently on the elements of its source,
+ * but returns the results in the order of the source.
+ * At most a window of elements are processed or waiting to be returned
+ * at the same time: when the oldest element is slow, no more element is
+ * taken from the source until it is done, so memory stays bounded.
+ * Elements of the window are processed by at most countThreads - 1 runners
+ * of the executor, plus the calling thread when it waits for the oldest one,
+ * whatever the size of the window.
+ * An iteration stopping before the end must call cancel(), otherwise the
+ * runners go on with the elements left in the window.
+ * 
+ * @param <S>
+ *            Type of the elements of the source
+ * @param <T>
+ *            Type of the elements coming out of the pipeline
+ */
+class OrderedIterator<S, T> extends Iterator<T>
+{
+	private Iterator<S> m_source;
+	private Pipeline<S, T> m_pipeline;
+	private Executor m_executor;
+	private int m_nWindow;
+	private volatile int m_nMaxRunners;
+	private ArrayDeque<FutureTask<Slot<S, T>>> m_window;
+	// Elements of the window no runner has taken yet
+	private final ConcurrentLinkedQueue<FutureTask<Slot<S, T>>> m_pending = new ConcurrentLinkedQueue<FutureTask<Slot<S, T>>>();
+	private final AtomicInteger m_countRunners = new AtomicInteger();
+	private boolean m_bCancelled = false;
+	
+	/**
+	 * @param pipeline stages to run on each element, or null if S is T
+	 * @param countThreads maximum number of threads processing elements, including the calling one
+	 */
+	OrderedIterator(Iterator<S> source, Pipeline<S, T> pipeline, Executor executor, int countThreads, int nWindow)
+	{
+		m_source = source;
+		m_pipeline = pipeline;
+		m_executor = executor;
+		m_nMaxRunners = countThreads - 1;
+		m_nWindow = nWindow;
+		m_window = new ArrayDeque<FutureTask<Slot<S, T>>>(nWindow);
+	}
+	
+	public boolean hasNext()
+	{
+		while ( true )
+		{
+			fill();
+			FutureTask<Slot<S, T>> oldest = m_window.peek();
+			if ( oldest == null )
+			{
+				return false;
+			}
+			if ( getSlot(oldest).m_bHasValue )
+			{
+				return true;
+			}
+			// The element was dropped by a stage
+			m_window.poll();
+		}
+	}
+	
+	public T next()
+	{
+		if ( !hasNext() )
+		{
+			throw new NoSuchElementException();
+		}
+		return getSlot(m_window.poll()).m_value;
+	}
+	
+	/**
+	 * Takes elements from the source until the window is full,
+	 * and starts runners for them while there are less than the maximum
+	 */
+	private void fill()
+	{
+		while ( !m_bCancelled && m_window.size() < m_nWindow && m_source.hasNext() )
+		{
+			FutureTask<Slot<S, T>> task = new FutureTask<Slot<S, T>>(new Slot<S, T>(m_source.next(), m_pipeline));
+			m_window.add(task);
+			// With a single thread, the calling thread runs every element itself
+			if ( m_nMaxRunners > 0 )
+			{
+				m_pending.add(task);
+			}
+		}
+		startRunners();
+	}
+	
+	/**
+	 * Stops the iteration before its end: the elements no runner has taken
+	 * yet are dropped, and the runners processing the others are interrupted.
+	 * The iterator then has no next element.
+	 */
+	void cancel()
+	{
+		m_bCancelled = true;
+		m_pending.clear();
+		for ( FutureTask<Slot<S, T>> task : m_window )
+		{
+			task.cancel(true);
+		}
+		m_window.clear();
+	}
+	
+	private void startRunners()
+	{
+		while ( !m_pending.isEmpty() )
+		{
+			int count = m_countRunners.get();
+			if ( count >= m_nMaxRunners )
+			{
+				return;
+			}
+			if ( m_countRunners.compareAndSet(count, count + 1) )
+			{
+				try
+				{
+					m_executor.execute(new Runner());
+				}
+				catch ( RejectedExecutionException e )
+				{
+					// The executor was shut down, as the default pool by
+					// DefaultExecutor.configure(): the calling thread 
+					// processes every element from now on
+					m_countRunners.decrementAndGet();
+					m_nMaxRunners = 0;
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Waits for an element to be processed, or processes it 
+	 * in the current thread if no thread of the executor started it
+	 */
+	private Slot<S, T> getSlot(FutureTask<Slot<S, T>> task)
+	{
+		task.run();
+		try
+		{
+			return task.get();
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new FunctionalRuntimeException(e);
+		}
+		catch ( ExecutionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw FunctionalRuntimeException.wrap(e.getCause());
+		}
+	}
+	
+	/**
+	 * Processes the pending elements of the window until there is none left
+	 */
+	private class Runner implements Runnable
+	{
+		public void run()
+		{
+			while ( true )
+			{
+				FutureTask<Slot<S, T>> task;
+				while ( (task = m_pending.poll()) != null )
+				{
+					// Does nothing if the calling thread already ran it
+					task.run();
+				}
+				m_countRunners.decrementAndGet();
+				// An element added after the last poll() may have seen too many runners
+				if ( m_pending.isEmpty() )
+				{
+					return;
+				}
+				int count = m_countRunners.get();
+				if ( count >= m_nMaxRunners || !m_countRunners.compareAndSet(count, count + 1) )
+				{
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * One element of the source and the result of the pipeline on it
+	 */
+	private static class Slot<S, T> implements Callable<Slot<S, T>>, Sink<T>
+	{
+		private S m_source;
+		private Pipeline<S, T> m_pipeline;
+		private T m_value;
+		private boolean m_bHasValue;
+		
+		private Slot(S source, Pipeline<S, T> pipeline)
+		{
+			m_source = source;
+			m_pipeline = pipeline;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public Slot<S, T> call() throws FunctionalException
+		{
+			if ( m_pipeline == null )
+			{
+				accept((T) m_source);
+			}
+			else
+			{
+				m_pipeline.wrap(this).accept(m_source);
+			}
+			m_source = null;
+			return this;
+		}
+		
+		public boolean accept(T t)
+		{
+			m_value = t;
+			m_bHasValue = true;
+			return true;
+		}
+	}
+}
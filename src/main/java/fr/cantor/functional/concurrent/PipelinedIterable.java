@@ -0,0 +1,247 @@
+package fr.cantor.functional.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * A boundary between the stages of a chain: the stages before it run on
+ * their own thread and hand their elements over to the stages after it
+ * through a bounded queue. Each group of stages separated by pipelined()
+ * works at the same time on different elements, so an I/O-bound source,
+ * a CPU-heavy mapping and a slow sink do not wait for each other.
+ *
+ * <pre>
+ * lines.pipelined().map(parse).pipelined().each(store);
+ * </pre>
+ *
+ * Reads the file, parses the lines and stores the results on three threads.
+ * When a stage is slower than the one before it, the queue fills up and
+ * the previous stage waits for room, so memory stays bounded by the
+ * capacity of the queues.
+ *
+ * When the stages before the boundary can be split, so is this Iterable:
+ * each part gets its own producer thread, so a following concurrently()
+ * runs as many pipelines as it has threads.
+ * The producer runs on VirtualExecutor by default, since it mostly waits for
+ * the consumer: giving it a bounded executor may starve it.
+ *
+ * @param <T>
+ *            Type to iterate on
+ */
+public class PipelinedIterable<T> extends Iterable<T>
+{
+	/**
+	 * Default maximum number of elements waiting between two stages
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	private Iterable<T> m_iterable;
+	private int m_nCapacity;
+	private Executor m_executor;
+	
+	/**
+	 * Runs the given Iterable on a thread of VirtualExecutor, with a queue of DEFAULT_CAPACITY elements
+	 */
+	public PipelinedIterable(Iterable<T> iterable)
+	{
+		this(iterable, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Runs the given Iterable on a thread of VirtualExecutor
+	 * @param nCapacity maximum number of elements waiting in the queue
+	 */
+	public PipelinedIterable(Iterable<T> iterable, int nCapacity)
+	{
+		this(iterable, nCapacity, null);
+	}
+	
+	/**
+	 * @param nCapacity maximum number of elements waiting in the queue
+	 * @param executor executor running the producer, or null to use VirtualExecutor
+	 */
+	public PipelinedIterable(Iterable<T> iterable, int nCapacity, Executor executor)
+	{
+		if ( nCapacity < 1 )
+		{
+			throw new IllegalArgumentException("nCapacity must be positive: " + nCapacity);
+		}
+		m_iterable = iterable;
+		m_nCapacity = nCapacity;
+		m_executor = executor;
+	}
+	
+	/**
+	 * @return the Iterable running on the producer thread
+	 */
+	public Iterable<T> getIterable()
+	{
+		return m_iterable;
+	}
+	
+	/**
+	 * Starts the producer thread. An iterator abandoned before its end only
+	 * stops the producer once it is garbage collected: prefer the operations
+	 * built on push() when stopping early, they stop it before returning.
+	 */
+	@Override
+	public Iterator<T> iterator()
+	{
+		return start().m_queue.iterator();
+	}
+	
+	/**
+	 * Reads the first element through push(), which stops the producer before returning
+	 */
+	@Override
+	public T first() throws FunctionalException
+	{
+		final List<T> found = new ArrayList<T>(1);
+		push(new Sink<T>()
+		{
+			public boolean accept(T t)
+			{
+				found.add(t);
+				return false;
+			}
+		});
+		return found.isEmpty() ? null : found.get(0);
+	}
+	
+	/**
+	 * Pushes the elements from the calling thread while the producer computes
+	 * the next ones, and waits for the producer to stop before returning
+	 */
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		Producer<T> producer = start();
+		boolean bPushed = false;
+		try
+		{
+			bPushed = producer.m_queue.push(sink);
+		}
+		finally
+		{
+			producer.m_queue.cancel();
+			producer.await();
+		}
+		return bPushed;
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_iterable.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_iterable.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return m_iterable.characteristics();
+	}
+	
+	/**
+	 * @return the parts of the producing Iterable, each one with its own
+	 *         producer, or null if it cannot be split
+	 */
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		List<Iterable<T>> iterables = m_iterable.split(nParts);
+		if ( iterables == null )
+		{
+			return null;
+		}
+		List<Iterable<T>> parts = new ArrayList<Iterable<T>>(iterables.size());
+		for ( Iterable<T> iterable : iterables )
+		{
+			parts.add(new PipelinedIterable<T>(iterable, m_nCapacity, m_executor));
+		}
+		return parts;
+	}
+	
+	private Producer<T> start()
+	{
+		Producer<T> producer = new Producer<T>(m_iterable, new SpscQueue<T>(m_nCapacity));
+		(( m_executor == null ) ? VirtualExecutor.get() : m_executor).execute(producer);
+		return producer;
+	}
+	
+	/**
+	 * Pushes the elements of the producing Iterable into the queue
+	 */
+	private static class Producer<T> extends FutureTask<Void>
+	{
+		private final SpscQueue<T> m_queue;
+		
+		private Producer(final Iterable<T> iterable, final SpscQueue<T> queue)
+		{
+			super(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						iterable.push(new Sink<T>()
+						{
+							public boolean accept(T t) throws FunctionalException
+							{
+								try
+								{
+									return queue.put(t);
+								}
+								catch ( InterruptedException e )
+								{
+									Thread.currentThread().interrupt();
+									throw new FunctionalException(e);
+								}
+							}
+						});
+						queue.close();
+					}
+					catch ( Throwable t )
+					{
+						queue.fail(t);
+					}
+				}
+			}, null);
+			m_queue = queue;
+		}
+		
+		/**
+		 * Waits for the producer to stop, its errors are given
+		 * to the consumer by the queue
+		 */
+		private void await() throws FunctionalException
+		{
+			try
+			{
+				get();
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new FunctionalException(e);
+			}
+			catch ( ExecutionException e )
+			{
+				throw new FunctionalException(e.getCause());
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package fr.cantor.functional.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * An Iterable on the elements of a reactive publisher.
+ * Each iteration subscribes once and receives the elements through a bounded
+ * queue: it requests as many elements as the queue holds, then requests more
+ * as it reads them, so a fast publisher cannot get ahead of a slow iteration.
+ * The error of the publisher, if any, is thrown once the elements received
+ * before it have been read.
+ *
+ * @param <T>
+ *            Type to iterate on
+ * @see Iterable#from(Flow.Publisher)
+ */
+public class PublisherIterable<T> extends Iterable<T>
+{
+	private Flow.Publisher<T> m_publisher;
+	private int m_nCapacity;
+	
+	/**
+	 * @param nCapacity maximum number of elements requested and not read yet
+	 */
+	public PublisherIterable(Flow.Publisher<T> publisher, int nCapacity)
+	{
+		if ( nCapacity < 1 )
+		{
+			throw new IllegalArgumentException("nCapacity must be positive: " + nCapacity);
+		}
+		m_publisher = publisher;
+		m_nCapacity = nCapacity;
+	}
+	
+	/**
+	 * Subscribes to the publisher. An iterator abandoned before its end only
+	 * cancels the subscription once it is garbage collected: prefer the
+	 * operations built on push() when stopping early, they cancel it at once.
+	 */
+	@Override
+	public Iterator<T> iterator()
+	{
+		return subscribe().iterator();
+	}
+	
+	/**
+	 * Reads the first element through push(), which cancels the subscription before returning
+	 */
+	@Override
+	public T first() throws FunctionalException
+	{
+		final List<T> found = new ArrayList<T>(1);
+		push(new Sink<T>()
+		{
+			public boolean accept(T t)
+			{
+				found.add(t);
+				return false;
+			}
+		});
+		return found.isEmpty() ? null : found.get(0);
+	}
+	
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return subscribe().push(sink);
+	}
+	
+	private Subscriber<T> subscribe()
+	{
+		Subscriber<T> subscriber = new Subscriber<T>(m_nCapacity);
+		m_publisher.subscribe(subscriber);
+		return subscriber;
+	}
+	
+	/**
+	 * Queues the received elements. Once a quarter of the capacity has been
+	 * read, requests as many elements again.
+	 */
+	private static class Subscriber<T> extends SpscQueue<T> implements Flow.Subscriber<T>
+	{
+		private final int m_nCapacity;
+		private final int m_nThreshold;
+		private volatile Flow.Subscription m_subscription;
+		private int m_countTaken = 0;
+		
+		private Subscriber(int nCapacity)
+		{
+			super(nCapacity);
+			m_nCapacity = nCapacity;
+			m_nThreshold = Math.max(1, nCapacity / 4);
+		}
+		
+		public void onSubscribe(Flow.Subscription subscription)
+		{
+			if ( m_subscription != null || isCancelled() )
+			{
+				subscription.cancel();
+				return;
+			}
+			m_subscription = subscription;
+			subscription.request(m_nCapacity);
+		}
+		
+		public void onNext(T t)
+		{
+			try
+			{
+				if ( !put(t) )
+				{
+					m_subscription.cancel();
+				}
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				m_subscription.cancel();
+				fail(e);
+			}
+		}
+		
+		public void onError(Throwable t)
+		{
+			fail(t);
+		}
+		
+		public void onComplete()
+		{
+			close();
+		}
+		
+		@Override
+		protected void taken(int count)
+		{
+			m_countTaken += count;
+			if ( m_countTaken >= m_nThreshold )
+			{
+				m_subscription.request(m_countTaken);
+				m_countTaken = 0;
+			}
+		}
+		
+		/**
+		 * Also cancels the subscription, when the sink stops early
+		 * or the iterator is abandoned
+		 */
+		@Override
+		void cancel()
+		{
+			super.cancel();
+			Flow.Subscription subscription = m_subscription;
+			if ( subscription != null )
+			{
+				subscription.cancel();
+			}
+		}
+	}
+}
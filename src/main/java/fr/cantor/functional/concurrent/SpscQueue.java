@@ -0,0 +1,391 @@
+package fr.cantor.functional.concurrent;
+
+import java.lang.ref.Cleaner;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * Bounded lock-free queue between one producer thread and one consumer thread.
+ * Elements are stored in a ring whose positions only grow: the producer alone
+ * writes the tail, the consumer alone writes the head, so no compare-and-set is
+ * needed. Each side keeps the last position of the other one it has read,
+ * and only reads it again when the ring looks full or empty.
+ *
+ * A full ring blocks the producer and an empty one blocks the consumer: they
+ * first spin a little, then park until the other side moves. The consumer reads
+ * every available element at once, so it moves its head once per batch.
+ * The producer ends the queue with close() or fail(), the consumer stops the
+ * producer with cancel(). An iterator abandoned before the end of the queue
+ * cancels it once it is garbage collected, so that the producer does not
+ * stay blocked forever on the full ring.
+ *
+ * The producer thread may change over time as long as there is only one at
+ * once and each one happens-before the next, like the threads of a publisher
+ * calling onNext(). The same goes for the consumer.
+ *
+ * @param <T>
+ *            Type of the queued elements
+ */
+class SpscQueue<T>
+{
+	/**
+	 * Number of times a side checks the other one before parking
+	 */
+	private static final int SPINS = 128;
+	
+	/**
+	 * Cancels the queues of the abandoned iterators
+	 */
+	private static final Cleaner s_cleaner = Cleaner.create();
+	
+	private final Object[] m_ring;
+	private final int m_nMask;
+	private final AtomicLong m_head = new AtomicLong();
+	private final AtomicLong m_tail = new AtomicLong();
+	// Last head read by the producer, last tail read by the consumer
+	private long m_headCache = 0;
+	private long m_tailCache = 0;
+	private volatile Thread m_waitingProducer;
+	private volatile Thread m_waitingConsumer;
+	private volatile boolean m_bClosed = false;
+	private volatile boolean m_bCancelled = false;
+	private volatile Throwable m_error;
+	
+	/**
+	 * @param nCapacity maximum number of queued elements, rounded up to a power of 2
+	 */
+	SpscQueue(int nCapacity)
+	{
+		if ( nCapacity < 1 || nCapacity > 1 << 30 )
+		{
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + nCapacity);
+		}
+		int nSize = ( nCapacity == 1 ) ? 1 : Integer.highestOneBit(nCapacity - 1) << 1;
+		m_ring = new Object[nSize];
+		m_nMask = nSize - 1;
+	}
+	
+	/**
+	 * Producer side: adds an element, waiting for room if the queue is full
+	 * @return false if the consumer cancelled the queue, the element is then dropped
+	 * @throws InterruptedException if the producer is interrupted while waiting
+	 */
+	boolean put(T t) throws InterruptedException
+	{
+		long nTail = m_tail.get();
+		int nSpins = 0;
+		while ( nTail - m_headCache >= m_ring.length )
+		{
+			m_headCache = m_head.get();
+			if ( nTail - m_headCache < m_ring.length )
+			{
+				break;
+			}
+			if ( m_bCancelled )
+			{
+				return false;
+			}
+			if ( nSpins < SPINS )
+			{
+				nSpins += 1;
+				Thread.onSpinWait();
+				continue;
+			}
+			m_waitingProducer = Thread.currentThread();
+			// Reading the head after publishing the waiting thread pairs with
+			// the consumer moving its head before reading the waiting thread
+			if ( nTail - m_head.get() >= m_ring.length && !m_bCancelled )
+			{
+				LockSupport.park(this);
+			}
+			m_waitingProducer = null;
+			if ( Thread.interrupted() )
+			{
+				throw new InterruptedException();
+			}
+		}
+		m_ring[(int) nTail & m_nMask] = t;
+		m_tail.set(nTail + 1);
+		wakeUp(m_waitingConsumer);
+		return !m_bCancelled;
+	}
+	
+	/**
+	 * Producer side: no more element will be added
+	 */
+	void close()
+	{
+		m_bClosed = true;
+		wakeUp(m_waitingConsumer);
+	}
+	
+	/**
+	 * Producer side: the production failed, the consumer will throw the error
+	 * once it has read the elements queued before it
+	 */
+	void fail(Throwable t)
+	{
+		m_error = t;
+		close();
+	}
+	
+	/**
+	 * Consumer side: stops the producer, which will see it at its next put()
+	 */
+	void cancel()
+	{
+		m_bCancelled = true;
+		wakeUp(m_waitingProducer);
+	}
+	
+	/**
+	 * @return true if the consumer cancelled the queue
+	 */
+	boolean isCancelled()
+	{
+		return m_bCancelled;
+	}
+	
+	/**
+	 * Consumer side: reads every available element, up to the size of the
+	 * buffer, waiting for at least one
+	 * @return the number of elements written in buffer, 0 only once the
+	 *         producer closed the queue and every element was read
+	 * @throws InterruptedException if the consumer is interrupted while waiting
+	 */
+	int take(Object[] buffer) throws InterruptedException
+	{
+		long nHead = m_head.get();
+		int nSpins = 0;
+		while ( m_tailCache == nHead )
+		{
+			// Reading the closed flag before the tail, so that every element
+			// added before closing is seen
+			boolean bClosed = m_bClosed;
+			m_tailCache = m_tail.get();
+			if ( m_tailCache != nHead )
+			{
+				break;
+			}
+			if ( bClosed )
+			{
+				return 0;
+			}
+			if ( nSpins < SPINS )
+			{
+				nSpins += 1;
+				Thread.onSpinWait();
+				continue;
+			}
+			m_waitingConsumer = Thread.currentThread();
+			if ( m_tail.get() == nHead && !m_bClosed )
+			{
+				LockSupport.park(this);
+			}
+			m_waitingConsumer = null;
+			if ( Thread.interrupted() )
+			{
+				throw new InterruptedException();
+			}
+		}
+		int count = (int) Math.min(buffer.length, m_tailCache - nHead);
+		for ( int i = 0; i < count; i += 1 )
+		{
+			int nIndex = (int) (nHead + i) & m_nMask;
+			buffer[i] = m_ring[nIndex];
+			m_ring[nIndex] = null;
+		}
+		m_head.set(nHead + count);
+		wakeUp(m_waitingProducer);
+		taken(count);
+		return count;
+	}
+	
+	/**
+	 * Called on the consumer side after each batch is read,
+	 * to let the producer know about the room left
+	 * @param count number of elements just read
+	 */
+	protected void taken(int count)
+	{
+	}
+	
+	/**
+	 * Consumer side: pushes every element until the end of the queue, then
+	 * throws the error of the producer if it failed. Cancels the queue when
+	 * the sink stops or throws.
+	 * @return true if every element was pushed, false if the sink stopped
+	 */
+	@SuppressWarnings("unchecked")
+	boolean push(Sink<T> sink) throws FunctionalException
+	{
+		boolean bDone = false;
+		try
+		{
+			Object[] buffer = new Object[Math.min(m_ring.length, Iterator.BATCH_SIZE)];
+			int count;
+			while ( (count = take(buffer)) > 0 )
+			{
+				for ( int i = 0; i < count; i += 1 )
+				{
+					if ( !sink.accept((T) buffer[i]) )
+					{
+						return false;
+					}
+				}
+			}
+			bDone = true;
+			checkError();
+			return true;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new FunctionalException(e);
+		}
+		finally
+		{
+			if ( !bDone )
+			{
+				cancel();
+			}
+		}
+	}
+	
+	/**
+	 * Consumer side: an iterator on the elements of the queue, which throws
+	 * the error of the producer once every element was read, and cancels the
+	 * queue when it is garbage collected
+	 */
+	Iterator<T> iterator()
+	{
+		Iterator<T> iterator = new Iterator<T>()
+		{
+			private Object[] m_buffer = new Object[Math.min(m_ring.length, Iterator.BATCH_SIZE)];
+			private int m_nIndex = 0;
+			private int m_count = 0;
+			
+			public boolean hasNext()
+			{
+				if ( m_nIndex < m_count )
+				{
+					return true;
+				}
+				m_nIndex = 0;
+				m_count = takeOrThrow(m_buffer);
+				return m_count > 0;
+			}
+			
+			@SuppressWarnings("unchecked")
+			public T next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				T next = (T) m_buffer[m_nIndex];
+				m_buffer[m_nIndex++] = null;
+				return next;
+			}
+			
+			/**
+			 * Returns what is already queued instead of waiting to fill the buffer
+			 */
+			@Override
+			public int nextBatch(Object[] buffer)
+			{
+				if ( m_nIndex < m_count )
+				{
+					return super.nextBatch(buffer);
+				}
+				return takeOrThrow(buffer);
+			}
+		};
+		s_cleaner.register(iterator, new Canceller(this));
+		return iterator;
+	}
+	
+	private int takeOrThrow(Object[] buffer)
+	{
+		try
+		{
+			int count = take(buffer);
+			if ( count == 0 )
+			{
+				checkError();
+			}
+			return count;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new FunctionalRuntimeException(e);
+		}
+		catch ( FunctionalException e )
+		{
+			throw FunctionalRuntimeException.wrap(e);
+		}
+	}
+	
+	/**
+	 * Throws the error of the producer, if any
+	 */
+	private void checkError() throws FunctionalException
+	{
+		Throwable t = m_error;
+		if ( t == null )
+		{
+			return;
+		}
+		if ( t instanceof FunctionalRuntimeException && t.getCause() instanceof FunctionalException )
+		{
+			throw (FunctionalException) t.getCause();
+		}
+		if ( t instanceof FunctionalException )
+		{
+			throw (FunctionalException) t;
+		}
+		if ( t instanceof RuntimeException )
+		{
+			throw (RuntimeException) t;
+		}
+		if ( t instanceof Error )
+		{
+			throw (Error) t;
+		}
+		throw new FunctionalException(t);
+	}
+	
+	/**
+	 * Cancels a queue, without referencing the iterator being collected
+	 */
+	private static class Canceller implements Runnable
+	{
+		private final SpscQueue<?> m_queue;
+		
+		private Canceller(SpscQueue<?> queue)
+		{
+			m_queue = queue;
+		}
+		
+		public void run()
+		{
+			m_queue.cancel();
+		}
+	}
+	
+	private static void wakeUp(Thread thread)
+	{
+		if ( thread != null )
+		{
+			LockSupport.unpark(thread);
+		}
+	}
+}
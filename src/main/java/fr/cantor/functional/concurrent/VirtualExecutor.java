@@ -0,0 +1,80 @@
+package fr.cantor.functional.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide executor starting one thread per task, used by 
+ * ConcurrentIterable.virtual() for iterations that mostly wait (disk, network...).
+ * On a JVM supporting virtual threads, every task runs on its own virtual thread.
+ * Otherwise it falls back to a pool of at most MAX_FALLBACK_THREADS daemon
+ * threads, further tasks waiting in a queue until a thread is free.
+ */
+public final class VirtualExecutor
+{
+	/**
+	 * Maximum number of threads of the fallback pool, idle ones stop after a minute
+	 */
+	public static final int MAX_FALLBACK_THREADS = ConcurrentIterable.DEFAULT_MAX_IN_FLIGHT;
+	
+	private static ExecutorService s_executor;
+	private static boolean s_bVirtual;
+	
+	private VirtualExecutor()
+	{
+	}
+	
+	/**
+	 * @return the executor, created on first call
+	 */
+	public static synchronized ExecutorService get()
+	{
+		if ( s_executor == null )
+		{
+			s_executor = createVirtualExecutor();
+			s_bVirtual = ( s_executor != null );
+			if ( s_executor == null )
+			{
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_FALLBACK_THREADS, MAX_FALLBACK_THREADS, 
+						60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+						new DefaultExecutor.NamedThreadFactory("functional-io-", true));
+				executor.allowCoreThreadTimeOut(true);
+				s_executor = executor;
+			}
+		}
+		return s_executor;
+	}
+	
+	/**
+	 * @return true if tasks run on virtual threads, 
+	 *         false if they run on the fallback pool
+	 */
+	public static synchronized boolean isVirtual()
+	{
+		get();
+		return s_bVirtual;
+	}
+	
+	/**
+	 * Virtual threads are looked up by reflection so that the library
+	 * still runs on JVMs without them.
+	 * @return the virtual thread executor, or null if not supported
+	 */
+	private static ExecutorService createVirtualExecutor()
+	{
+		try
+		{
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch ( Exception e )
+		{
+			// Not available or still in preview on this JVM
+			return null;
+		}
+	}
+}
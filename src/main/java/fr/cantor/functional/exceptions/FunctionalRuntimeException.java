@@ -22,4 +22,24 @@ public class FunctionalRuntimeException extends RuntimeException
 	{
 		super(msg, t);
 	}	
+	
+	/**
+	 * @param bStackTrace false to skip capturing the stack trace
+	 */
+	protected FunctionalRuntimeException(Throwable t, boolean bStackTrace)
+	{
+		super(( t == null ) ? null : t.toString(), t, true, bStackTrace);
+	}
+	
+	/**
+	 * Carries a checked exception through a method which cannot throw it, 
+	 * like Iterator.next(). The wrapper has no stack trace of its own since 
+	 * the cause already has it, so wrapping costs no more than an allocation.
+	 * @param t the exception to carry
+	 * @return a new exception without stack trace, whose cause is t
+	 */
+	public static FunctionalRuntimeException wrap(Throwable t)
+	{
+		return new FunctionalRuntimeException(t, false);
+	}
 }
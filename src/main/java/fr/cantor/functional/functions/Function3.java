@@ -0,0 +1,8 @@
+package fr.cantor.functional.functions;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+public interface Function3<R, T1, T2, T3>
+{
+	public R call(T1 t1, T2 t2, T3 t3) throws FunctionalException;
+}
@@ -0,0 +1,12 @@
+package fr.cantor.functional.functions;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Version of Function1 also receiving the index of the element,
+ * as a primitive int so that nothing is allocated per element.
+ */
+public interface IndexedFunction1<R, T1>
+{
+	public R call(int nIndex, T1 t1) throws FunctionalException;
+}
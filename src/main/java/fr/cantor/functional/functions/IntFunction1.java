@@ -0,0 +1,12 @@
+package fr.cantor.functional.functions;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Primitive version of Function1 transforming an int into another int
+ * without boxing.
+ */
+public interface IntFunction1
+{
+	public int call(int n) throws FunctionalException;
+}
@@ -0,0 +1,12 @@
+package fr.cantor.functional.functions;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Primitive version of Function2 combining two ints into another int
+ * without boxing. Mostly used as an injecter on an IntIterable.
+ */
+public interface IntFunction2
+{
+	public int call(int n1, int n2) throws FunctionalException;
+}
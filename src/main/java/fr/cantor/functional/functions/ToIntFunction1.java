@@ -0,0 +1,14 @@
+package fr.cantor.functional.functions;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * A function transforming an object into an int without boxing the result.
+ * 
+ * @param <T1>
+ *            Type of the parameter
+ */
+public interface ToIntFunction1<T1>
+{
+	public int call(T1 t1) throws FunctionalException;
+}
@@ -1,38 +1,27 @@
 package fr.cantor.functional.functions.methods;
 
-import java.lang.reflect.Method;
-
 import fr.cantor.functional.exceptions.FunctionalException;
 import fr.cantor.functional.functions.Function1;
 
+/**
+ * Calls a public method without parameter on the element, 
+ * like new Method0&lt;String, Person&gt;("getName").
+ * The method is looked up for each class of receiver and then called
+ * through a cached MethodHandle.
+ * @see MethodInvoker
+ */
 public class Method0<R, T1> implements Function1<R, T1>
 {
-	private String m_name;
-	private Method m_method;
+	private MethodInvoker m_invoker;
 
 	public Method0(String name)
 	{
-		m_name = name;
+		m_invoker = new MethodInvoker(name, 0, new Class<?>[0]);
 	}
 	
 	@SuppressWarnings("unchecked")
 	public R call(T1 t1) throws FunctionalException 
 	{
-		try
-		{
-			if ( m_method == null )
-			{
-				m_method = t1.getClass().getMethod(m_name);
-			}
-			return (R) m_method.invoke(t1);
-		}
-		catch ( RuntimeException e ) 
-		{
-			throw e;
-		}
-		catch ( Exception e )
-		{
-			throw new FunctionalException(e);
-		}
+		return (R) m_invoker.invoke(t1);
 	}
 }
@@ -0,0 +1,37 @@
+package fr.cantor.functional.functions.methods;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function2;
+
+/**
+ * Calls a public method with one parameter on the first argument,
+ * like new Method1&lt;Boolean, String, String&gt;("startsWith").
+ * @see Method0
+ */
+public class Method1<R, T1, T2> implements Function2<R, T1, T2>
+{
+	private MethodInvoker m_invoker;
+
+	/**
+	 * @param name name of the only public method with one parameter
+	 */
+	public Method1(String name)
+	{
+		m_invoker = new MethodInvoker(name, 1, null);
+	}
+	
+	/**
+	 * @param name name of the method
+	 * @param parameterType type of its parameter, to choose between overloads
+	 */
+	public Method1(String name, Class<?> parameterType)
+	{
+		m_invoker = new MethodInvoker(name, 1, new Class<?>[]{ parameterType });
+	}
+	
+	@SuppressWarnings("unchecked")
+	public R call(T1 t1, T2 t2) throws FunctionalException 
+	{
+		return (R) m_invoker.invoke(t1, t2);
+	}
+}
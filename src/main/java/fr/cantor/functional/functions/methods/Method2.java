@@ -0,0 +1,38 @@
+package fr.cantor.functional.functions.methods;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function3;
+
+/**
+ * Calls a public method with two parameters on the first argument,
+ * like new Method2&lt;String, String, Integer, Integer&gt;("substring").
+ * @see Method0
+ */
+public class Method2<R, T1, T2, T3> implements Function3<R, T1, T2, T3>
+{
+	private MethodInvoker m_invoker;
+
+	/**
+	 * @param name name of the only public method with two parameters
+	 */
+	public Method2(String name)
+	{
+		m_invoker = new MethodInvoker(name, 2, null);
+	}
+	
+	/**
+	 * @param name name of the method
+	 * @param parameterType1 type of its first parameter, to choose between overloads
+	 * @param parameterType2 type of its second parameter
+	 */
+	public Method2(String name, Class<?> parameterType1, Class<?> parameterType2)
+	{
+		m_invoker = new MethodInvoker(name, 2, new Class<?>[]{ parameterType1, parameterType2 });
+	}
+	
+	@SuppressWarnings("unchecked")
+	public R call(T1 t1, T2 t2, T3 t3) throws FunctionalException 
+	{
+		return (R) m_invoker.invoke(t1, t2, t3);
+	}
+}
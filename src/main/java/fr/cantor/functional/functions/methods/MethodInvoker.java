@@ -0,0 +1,289 @@
+package fr.cantor.functional.functions.methods;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Finds and calls a public method by its name on receivers of any class.
+ * 
+ * Methods are called through MethodHandles adapted to a generic type, 
+ * so that invokeExact() does not check nor box arguments at each call 
+ * like Method.invoke() does.
+ * Handles are kept in an inline cache keyed by the class of the receiver:
+ * a single entry while every receiver has the same class (monomorphic),
+ * a few entries scanned in order for a few classes (polymorphic), then
+ * a ClassValue when there are too many classes (megamorphic).
+ */
+class MethodInvoker
+{
+	/**
+	 * Number of receiver classes above which the cache becomes megamorphic
+	 */
+	static final int POLYMORPHIC_LIMIT = 4;
+	
+	private final String m_name;
+	private final Class<?>[] m_parameterTypes;
+	private final int m_countParameters;
+	
+	// Copy on write, so that readers never lock
+	private volatile Entry[] m_entries = new Entry[0];
+	private volatile ClassValue<MethodHandle> m_megamorphic = null;
+	
+	/**
+	 * @param name
+	 *            name of the method
+	 * @param countParameters
+	 *            number of parameters of the method
+	 * @param parameterTypes
+	 *            exact parameter types, or null to look for the only method 
+	 *            with this name and this number of parameters
+	 */
+	MethodInvoker(String name, int countParameters, Class<?>[] parameterTypes)
+	{
+		if ( parameterTypes != null && parameterTypes.length != countParameters )
+		{
+			throw new IllegalArgumentException(name + " takes " + countParameters + " parameters, not " + parameterTypes.length);
+		}
+		m_name = name;
+		m_countParameters = countParameters;
+		m_parameterTypes = parameterTypes;
+	}
+	
+	Object invoke(Object receiver) throws FunctionalException
+	{
+		try
+		{
+			return (Object) getHandle(receiver.getClass()).invokeExact(receiver);
+		}
+		catch ( RuntimeException e )
+		{
+			throw e;
+		}
+		catch ( Error e )
+		{
+			throw e;
+		}
+		catch ( Throwable t )
+		{
+			throw new FunctionalException(t);
+		}
+	}
+	
+	Object invoke(Object receiver, Object arg1) throws FunctionalException
+	{
+		try
+		{
+			return (Object) getHandle(receiver.getClass()).invokeExact(receiver, arg1);
+		}
+		catch ( RuntimeException e )
+		{
+			throw e;
+		}
+		catch ( Error e )
+		{
+			throw e;
+		}
+		catch ( Throwable t )
+		{
+			throw new FunctionalException(t);
+		}
+	}
+	
+	Object invoke(Object receiver, Object arg1, Object arg2) throws FunctionalException
+	{
+		try
+		{
+			return (Object) getHandle(receiver.getClass()).invokeExact(receiver, arg1, arg2);
+		}
+		catch ( RuntimeException e )
+		{
+			throw e;
+		}
+		catch ( Error e )
+		{
+			throw e;
+		}
+		catch ( Throwable t )
+		{
+			throw new FunctionalException(t);
+		}
+	}
+	
+	/**
+	 * @return the handle of the method for receivers of this class,
+	 *         taking (Object...) and returning Object
+	 */
+	private MethodHandle getHandle(Class<?> receiverClass) throws FunctionalException
+	{
+		Entry[] entries = m_entries;
+		for ( Entry entry : entries )
+		{
+			if ( entry.m_class == receiverClass )
+			{
+				return entry.m_handle;
+			}
+		}
+		ClassValue<MethodHandle> megamorphic = m_megamorphic;
+		if ( megamorphic != null )
+		{
+			try
+			{
+				return megamorphic.get(receiverClass);
+			}
+			catch ( LookupException e )
+			{
+				throw (FunctionalException) e.getCause();
+			}
+		}
+		return addEntry(receiverClass);
+	}
+	
+	private synchronized MethodHandle addEntry(Class<?> receiverClass) throws FunctionalException
+	{
+		Entry[] entries = m_entries;
+		for ( Entry entry : entries )
+		{
+			if ( entry.m_class == receiverClass )
+			{
+				return entry.m_handle;
+			}
+		}
+		if ( entries.length == POLYMORPHIC_LIMIT )
+		{
+			if ( m_megamorphic == null )
+			{
+				m_megamorphic = new ClassValue<MethodHandle>()
+				{
+					@Override
+					protected MethodHandle computeValue(Class<?> type)
+					{
+						try
+						{
+							return lookup(type);
+						}
+						catch ( FunctionalException e )
+						{
+							throw new LookupException(e);
+						}
+					}
+				};
+			}
+			return getHandle(receiverClass);
+		}
+		MethodHandle handle = lookup(receiverClass);
+		Entry[] entriesNew = new Entry[entries.length + 1];
+		System.arraycopy(entries, 0, entriesNew, 0, entries.length);
+		entriesNew[entries.length] = new Entry(receiverClass, handle);
+		m_entries = entriesNew;
+		return handle;
+	}
+	
+	private MethodHandle lookup(Class<?> receiverClass) throws FunctionalException
+	{
+		Method method = findMethod(receiverClass);
+		if ( method == null )
+		{
+			throw new FunctionalException("No public method " + m_name + " with " + m_countParameters + " parameters in " + receiverClass.getName());
+		}
+		try
+		{
+			return MethodHandles.publicLookup().unreflect(method).asType(MethodType.genericMethodType(m_countParameters + 1));
+		}
+		catch ( IllegalAccessException e )
+		{
+			throw new FunctionalException(e);
+		}
+	}
+	
+	/**
+	 * Looks for the method in the class, then in its public ancestors since 
+	 * the class itself may not be accessible (an anonymous or private class)
+	 * @return the method declared by a public type, or null if there is none
+	 */
+	private Method findMethod(Class<?> type) throws FunctionalException
+	{
+		if ( Modifier.isPublic(type.getModifiers()) )
+		{
+			Method method = findPublicMethod(type);
+			if ( method != null && Modifier.isPublic(method.getDeclaringClass().getModifiers()) )
+			{
+				return method;
+			}
+		}
+		if ( type.getSuperclass() != null )
+		{
+			Method method = findMethod(type.getSuperclass());
+			if ( method != null )
+			{
+				return method;
+			}
+		}
+		for ( Class<?> typeInterface : type.getInterfaces() )
+		{
+			Method method = findMethod(typeInterface);
+			if ( method != null )
+			{
+				return method;
+			}
+		}
+		return null;
+	}
+	
+	private Method findPublicMethod(Class<?> type) throws FunctionalException
+	{
+		if ( m_parameterTypes != null )
+		{
+			try
+			{
+				return type.getMethod(m_name, m_parameterTypes);
+			}
+			catch ( NoSuchMethodException e )
+			{
+				return null;
+			}
+		}
+		Method found = null;
+		for ( Method method : type.getMethods() )
+		{
+			if ( method.getName().equals(m_name) && method.getParameterTypes().length == m_countParameters && !method.isBridge() )
+			{
+				if ( found != null && !Arrays.equals(found.getParameterTypes(), method.getParameterTypes()) )
+				{
+					throw new FunctionalException("Several methods " + m_name + " with " + m_countParameters + " parameters in " + type.getName() + ", give the parameter types");
+				}
+				found = method;
+			}
+		}
+		return found;
+	}
+	
+	private static class Entry
+	{
+		private final Class<?> m_class;
+		private final MethodHandle m_handle;
+		
+		private Entry(Class<?> type, MethodHandle handle)
+		{
+			m_class = type;
+			m_handle = handle;
+		}
+	}
+	
+	/**
+	 * Carries a lookup failure out of ClassValue.computeValue()
+	 */
+	@SuppressWarnings("serial")
+	private static class LookupException extends RuntimeException
+	{
+		private LookupException(FunctionalException e)
+		{
+			super(e);
+		}
+	}
+}
@@ -2,12 +2,17 @@ package fr.cantor.functional.functions.operators;
 
 import fr.cantor.functional.exceptions.FunctionalException;
 import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.IntFunction2;
 
-public class IntegerMultiply implements Function2<Integer, Integer, Integer>
+public class IntegerMultiply implements Function2<Integer, Integer, Integer>, IntFunction2
 {
 	public Integer call(Integer n1, Integer n2) throws FunctionalException
 	{
 		return n1 * n2;
 	}
 
+	public int call(int n1, int n2) throws FunctionalException
+	{
+		return n1 * n2;
+	}
 }
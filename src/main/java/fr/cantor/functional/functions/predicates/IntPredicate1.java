@@ -0,0 +1,12 @@
+package fr.cantor.functional.functions.predicates;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Primitive version of Predicate1 testing an int without boxing 
+ * neither the parameter nor the result.
+ */
+public interface IntPredicate1
+{
+	public boolean call(int n) throws FunctionalException;
+}
@@ -0,0 +1,8 @@
+package fr.cantor.functional.functions.procedures;
+
+import fr.cantor.functional.functions.IndexedFunction1;
+
+/**
+ * Version of Procedure1 also receiving the index of the element.
+ */
+public interface IndexedProcedure1<T1> extends IndexedFunction1<Void, T1> {}
@@ -0,0 +1,11 @@
+package fr.cantor.functional.functions.procedures;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Primitive version of Procedure1 processing an int without boxing.
+ */
+public interface IntProcedure1
+{
+	public void call(int n) throws FunctionalException;
+}
@@ -0,0 +1,117 @@
+package fr.cantor.functional.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence viewing bytes of a buffer without copying them.
+ * Each byte is one char when the charset is ISO-8859-1, or when the bytes
+ * are ASCII in UTF-8 or US-ASCII: this is what most logs and CSV files 
+ * contain. Other bytes are decoded with the charset of the file the first
+ * time a char is read, so that length(), charAt() and toString() always agree.
+ * toString() is the only method making a copy of viewed bytes.
+ */
+public class ByteSequence implements CharSequence
+{
+	private ByteBuffer m_bytes;
+	private Charset m_charset;
+	
+	// Decoded chars, or null while the bytes are read one char per byte
+	private String m_decoded;
+	private boolean m_bChecked = false;
+	
+	public ByteSequence(ByteBuffer bytes, Charset charset)
+	{
+		m_bytes = bytes;
+		m_charset = charset;
+	}
+	
+	/**
+	 * @return a view of the bytes, sharing their content
+	 */
+	public ByteBuffer getBytes()
+	{
+		return m_bytes.duplicate();
+	}
+	
+	public int length()
+	{
+		String decoded = decoded();
+		return ( decoded == null ) ? m_bytes.remaining() : decoded.length();
+	}
+	
+	public char charAt(int index)
+	{
+		String decoded = decoded();
+		if ( decoded != null )
+		{
+			return decoded.charAt(index);
+		}
+		if ( index < 0 || index >= length() )
+		{
+			throw new IndexOutOfBoundsException(index + " out of " + length());
+		}
+		return (char) (m_bytes.get(m_bytes.position() + index) & 0xff);
+	}
+	
+	public CharSequence subSequence(int start, int end)
+	{
+		String decoded = decoded();
+		if ( decoded != null )
+		{
+			return decoded.subSequence(start, end);
+		}
+		if ( start < 0 || end > length() || start > end )
+		{
+			throw new IndexOutOfBoundsException("[" + start + ", " + end + "[ out of " + length());
+		}
+		return new ByteSequence(MappedFile.slice(m_bytes, m_bytes.position() + start, m_bytes.position() + end), m_charset);
+	}
+	
+	/**
+	 * @return the bytes decoded with the charset of the file
+	 */
+	@Override
+	public String toString()
+	{
+		return ( m_decoded != null ) ? m_decoded : m_charset.decode(m_bytes.duplicate()).toString();
+	}
+	
+	/**
+	 * Checks once whether the bytes can be read one char per byte
+	 * @return the decoded chars, or null if the bytes can be read directly
+	 */
+	private String decoded()
+	{
+		if ( !m_bChecked )
+		{
+			m_bChecked = true;
+			if ( !isLatin1() )
+			{
+				m_decoded = toString();
+			}
+		}
+		return m_decoded;
+	}
+	
+	private boolean isLatin1()
+	{
+		if ( m_charset.equals(StandardCharsets.ISO_8859_1) )
+		{
+			return true;
+		}
+		if ( !m_charset.equals(StandardCharsets.UTF_8) && !m_charset.equals(StandardCharsets.US_ASCII) )
+		{
+			return false;
+		}
+		for ( int i = m_bytes.position(); i < m_bytes.limit(); i += 1 )
+		{
+			if ( m_bytes.get(i) < 0 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,27 @@
+package fr.cantor.functional.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Writes the bytes representing an element into a buffer.
+ * An encoder is shared by every thread writing concurrently, 
+ * so it must not keep any state of its own.
+ * 
+ * @param <T> Type of the encoded elements
+ * @see fr.cantor.functional.Iterable#writeTo(java.nio.file.Path, Encoder)
+ */
+public interface Encoder<T>
+{
+	/**
+	 * @param t element to encode
+	 * @param buffer buffer receiving the bytes from its position
+	 * @throws BufferOverflowException if there is not enough room in the 
+	 *         buffer: it is then flushed, or enlarged, and encode() is called 
+	 *         again for the same element
+	 * @throws FunctionalException
+	 */
+	public void encode(T t, ByteBuffer buffer) throws FunctionalException;
+}
@@ -0,0 +1,114 @@
+package fr.cantor.functional.io;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Encodes elements into reusable direct buffers and commits them to a 
+ * FileOutput when they are all full. Used by one thread only: concurrent 
+ * writers each have their own sink on the same FileOutput.
+ * finish() must be called after the last element.
+ */
+public class EncodingSink<T> implements Sink<T>
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int BUFFER_COUNT = 4;
+	
+	private final FileOutput m_output;
+	private final Encoder<T> m_encoder;
+	private final int m_nPart;
+	private ByteBuffer[] m_buffers = allocate();
+	private int m_nCurrent = 0;
+	
+	EncodingSink(FileOutput output, Encoder<T> encoder, int nPart)
+	{
+		m_output = output;
+		m_encoder = encoder;
+		m_nPart = nPart;
+	}
+	
+	public boolean accept(T t) throws FunctionalException
+	{
+		while ( true )
+		{
+			ByteBuffer buffer = m_buffers[m_nCurrent];
+			int nMark = buffer.position();
+			try
+			{
+				m_encoder.encode(t, buffer);
+				return true;
+			}
+			catch ( BufferOverflowException e )
+			{
+				buffer.position(nMark);
+			}
+			if ( nMark == 0 )
+			{
+				// The element alone does not fit in a buffer
+				m_buffers[m_nCurrent] = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+			}
+			else if ( ++m_nCurrent == m_buffers.length )
+			{
+				commit(false);
+			}
+		}
+	}
+	
+	/**
+	 * Commits the remaining buffers
+	 * @throws FunctionalException
+	 */
+	public void finish() throws FunctionalException
+	{
+		commit(true);
+	}
+	
+	private void commit(boolean bLast) throws FunctionalException
+	{
+		int count = Math.min(m_nCurrent + 1, m_buffers.length);
+		if ( count > 1 && m_buffers[count - 1].position() == 0 )
+		{
+			count -= 1;
+		}
+		ByteBuffer[] buffers = new ByteBuffer[count];
+		for ( int i = 0; i < count; i += 1 )
+		{
+			m_buffers[i].flip();
+			buffers[i] = m_buffers[i];
+		}
+		try
+		{
+			if ( m_output.commit(m_nPart, buffers, bLast) )
+			{
+				for ( ByteBuffer buffer : m_buffers )
+				{
+					buffer.clear();
+				}
+			}
+			else if ( !bLast )
+			{
+				// The output keeps the buffers until the turn of this part
+				m_buffers = allocate();
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new FunctionalException(e);
+		}
+		m_nCurrent = 0;
+	}
+	
+	private static ByteBuffer[] allocate()
+	{
+		ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+		for ( int i = 0; i < BUFFER_COUNT; i += 1 )
+		{
+			buffers[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		return buffers;
+	}
+}
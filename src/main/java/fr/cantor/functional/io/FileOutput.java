@@ -0,0 +1,168 @@
+package fr.cantor.functional.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file receiving the buffers filled by one or several EncodingSinks.
+ * 
+ * Buffers are written with gathering writes, one sink at a time.
+ * Sinks writing unordered parts (part -1) commit as soon as their buffers
+ * are full. Sinks writing numbered parts commit directly when every
+ * previous part has been written; the buffers of the following parts 
+ * are kept until their turn comes, up to MAX_PENDING commits per part.
+ * Past that, the sink waits for its turn: the part being written is always
+ * running, as ConcurrentIterable runs a part on the calling thread when no
+ * other thread took it, so the wait ends, or fails once the sink is
+ * interrupted or the file is closed.
+ */
+public class FileOutput implements Closeable
+{
+	private static final int MAX_PENDING = 4;
+	
+	private final FileChannel m_channel;
+	private boolean m_bClosed = false;
+	private long m_nBytesWritten = 0;
+	
+	// Index of the part currently written in order
+	private int m_nTurn = 0;
+	private final Map<Integer, List<ByteBuffer[]>> m_pending = new HashMap<Integer, List<ByteBuffer[]>>();
+	private final Map<Integer, Boolean> m_finished = new HashMap<Integer, Boolean>();
+	
+	/**
+	 * Creates the file, or truncates it
+	 * @param path file to write
+	 * @throws IOException
+	 */
+	public FileOutput(Path path) throws IOException
+	{
+		m_channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+	
+	/**
+	 * @param encoder encoder of the elements
+	 * @param nPart index of the part written by the sink in file order, 
+	 *              or -1 if it can be written anywhere
+	 * @return a new sink writing to this file, to be used by one thread
+	 */
+	public <T> EncodingSink<T> sink(Encoder<T> encoder, int nPart)
+	{
+		return new EncodingSink<T>(this, encoder, nPart);
+	}
+	
+	/**
+	 * @return the number of bytes written so far
+	 */
+	public synchronized long getBytesWritten()
+	{
+		return m_nBytesWritten;
+	}
+	
+	/**
+	 * Writes buffers of a part, or keeps them until the previous parts are written.
+	 * Waits for the turn of the part when it already has MAX_PENDING commits kept.
+	 * @param nPart index of the part, or -1 for an unordered part
+	 * @param buffers flipped buffers to write
+	 * @param bLast true for the last buffers of the part
+	 * @return true if the buffers were written and can be reused, 
+	 *         false if they are kept to be written later
+	 * @throws IOException
+	 */
+	synchronized boolean commit(int nPart, ByteBuffer[] buffers, boolean bLast) throws IOException
+	{
+		List<ByteBuffer[]> pending = ( nPart < 0 ) ? null : m_pending.get(nPart);
+		while ( pending != null && pending.size() >= MAX_PENDING && nPart != m_nTurn )
+		{
+			if ( m_bClosed )
+			{
+				throw new ClosedChannelException();
+			}
+			try
+			{
+				wait();
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		if ( nPart < 0 || nPart == m_nTurn )
+		{
+			write(buffers);
+			if ( bLast && nPart >= 0 )
+			{
+				m_nTurn += 1;
+				writePending();
+				notifyAll();
+			}
+			return true;
+		}
+		if ( pending == null )
+		{
+			pending = new ArrayList<ByteBuffer[]>();
+			m_pending.put(nPart, pending);
+		}
+		pending.add(buffers);
+		if ( bLast )
+		{
+			m_finished.put(nPart, Boolean.TRUE);
+		}
+		return false;
+	}
+	
+	/**
+	 * Writes the buffers kept for the following parts, 
+	 * until a part which is not finished yet
+	 */
+	private void writePending() throws IOException
+	{
+		while ( true )
+		{
+			List<ByteBuffer[]> pending = m_pending.remove(m_nTurn);
+			if ( pending != null )
+			{
+				for ( ByteBuffer[] buffers : pending )
+				{
+					write(buffers);
+				}
+			}
+			if ( m_finished.remove(m_nTurn) == null )
+			{
+				return;
+			}
+			m_nTurn += 1;
+		}
+	}
+	
+	private void write(ByteBuffer[] buffers) throws IOException
+	{
+		for ( ByteBuffer buffer : buffers )
+		{
+			while ( buffer.hasRemaining() )
+			{
+				m_nBytesWritten += m_channel.write(buffers);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the file, failing the sinks waiting for their turn
+	 */
+	public synchronized void close() throws IOException
+	{
+		m_bClosed = true;
+		notifyAll();
+		m_channel.close();
+	}
+}
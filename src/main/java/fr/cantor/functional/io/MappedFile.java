@@ -0,0 +1,105 @@
+package fr.cantor.functional.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * A region of a file read through memory mapped windows.
+ * Windows are mapped while iterating, one segment at a time, so that 
+ * files larger than the address space of a single mapping can be read.
+ * A mapping stays valid after its channel is closed and is released 
+ * when its buffer is garbage collected.
+ *
+ * @param <T> Type of the elements read from the file
+ */
+public abstract class MappedFile<T> extends Iterable<T>
+{
+	/**
+	 * Default size of the mapped windows
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+	
+	protected final Path m_path;
+	protected final long m_nBegin;
+	protected final long m_nEnd;
+	protected final int m_nSegmentSize;
+	
+	/**
+	 * @param path file to read
+	 * @param nBegin offset of the first byte of the region (included)
+	 * @param nEnd offset of the last byte of the region (excluded)
+	 * @param nSegmentSize size of the windows to map
+	 */
+	protected MappedFile(Path path, long nBegin, long nEnd, int nSegmentSize)
+	{
+		if ( nSegmentSize <= 0 )
+		{
+			throw new IllegalArgumentException("Segment size must be positive: " + nSegmentSize);
+		}
+		m_path = path;
+		m_nBegin = nBegin;
+		m_nEnd = nEnd;
+		m_nSegmentSize = nSegmentSize;
+	}
+	
+	/**
+	 * @return the size of a file, wrapping the IOException
+	 */
+	protected static long length(Path path)
+	{
+		try
+		{
+			return Files.size(path);
+		}
+		catch ( IOException e )
+		{
+			throw new FunctionalRuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Maps a read-only window of the region
+	 * @param nPosition offset in the file of the first byte to map
+	 * @param nSize maximum number of bytes to map, truncated at the end of the region
+	 * @return the mapped window
+	 */
+	protected MappedByteBuffer mapWindow(long nPosition, long nSize)
+	{
+		long nSizeMapped = Math.min(Math.min(nSize, m_nEnd - nPosition), Integer.MAX_VALUE);
+		try
+		{
+			FileChannel channel = FileChannel.open(m_path, StandardOpenOption.READ);
+			try
+			{
+				return channel.map(FileChannel.MapMode.READ_ONLY, nPosition, nSizeMapped);
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new FunctionalRuntimeException(e);
+		}
+	}
+	
+	/**
+	 * @return a view of bytes of a window, sharing its content
+	 */
+	protected static ByteBuffer slice(ByteBuffer window, int nBegin, int nEnd)
+	{
+		ByteBuffer view = window.duplicate();
+		view.limit(nEnd);
+		view.position(nBegin);
+		return view.slice();
+	}
+}
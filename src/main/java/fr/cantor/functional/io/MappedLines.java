@@ -0,0 +1,177 @@
+package fr.cantor.functional.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * The lines of a file, read through memory mapped windows.
+ * Lines are separated by '\n', a trailing '\r' is removed, and each line
+ * is a ByteSequence viewing the mapped bytes: nothing is copied unless 
+ * toString() is called.
+ * The file is split on line boundaries, so that ConcurrentIterable
+ * reads different regions of the file in parallel.
+ */
+public class MappedLines extends MappedFile<CharSequence>
+{
+	// Size of the windows mapped to look for a line boundary
+	private static final int PROBE_SIZE = 1 << 16;
+	
+	private final Charset m_charset;
+	
+	/**
+	 * @param path file to read, in UTF-8
+	 */
+	public MappedLines(Path path)
+	{
+		this(path, Charset.forName("UTF-8"));
+	}
+	
+	/**
+	 * @param path file to read
+	 * @param charset charset of the file, used to decode the lines which are not ASCII
+	 */
+	public MappedLines(Path path, Charset charset)
+	{
+		this(path, charset, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * @param path file to read
+	 * @param charset charset of the file, used to decode the lines which are not ASCII
+	 * @param nSegmentSize size of the mapped windows
+	 */
+	public MappedLines(Path path, Charset charset, int nSegmentSize)
+	{
+		this(path, charset, 0, length(path), nSegmentSize);
+	}
+	
+	private MappedLines(Path path, Charset charset, long nBegin, long nEnd, int nSegmentSize)
+	{
+		super(path, nBegin, nEnd, nSegmentSize);
+		m_charset = charset;
+	}
+	
+	public Iterator<CharSequence> iterator()
+	{
+		return new Iterator<CharSequence>()
+		{
+			// Offset in the file of the next line
+			private long m_nPosition = m_nBegin;
+			private ByteBuffer m_window = null;
+			private long m_nWindowStart;
+			
+			public boolean hasNext()
+			{
+				return m_nPosition < m_nEnd;
+			}
+			
+			public CharSequence next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				if ( m_window == null || m_nPosition >= m_nWindowStart + m_window.limit() )
+				{
+					remap(m_nSegmentSize);
+				}
+				while ( true )
+				{
+					int nStart = (int) (m_nPosition - m_nWindowStart);
+					int nLimit = m_window.limit();
+					for ( int i = nStart; i < nLimit; i += 1 )
+					{
+						if ( m_window.get(i) == '\n' )
+						{
+							m_nPosition = m_nWindowStart + i + 1;
+							return line(nStart, i);
+						}
+					}
+					if ( m_nWindowStart + nLimit == m_nEnd )
+					{
+						m_nPosition = m_nEnd;
+						return line(nStart, nLimit);
+					}
+					// The line crosses the end of the window: map again from its start
+					if ( nLimit - nStart == Integer.MAX_VALUE )
+					{
+						throw new FunctionalRuntimeException("Line too long at offset " + m_nPosition + " in " + m_path);
+					}
+					remap(Math.max(m_nSegmentSize, 2L * (nLimit - nStart)));
+				}
+			}
+			
+			private void remap(long nSize)
+			{
+				m_window = mapWindow(m_nPosition, nSize);
+				m_nWindowStart = m_nPosition;
+			}
+			
+			private CharSequence line(int nStart, int nEnd)
+			{
+				if ( nEnd > nStart && m_window.get(nEnd - 1) == '\r' )
+				{
+					nEnd -= 1;
+				}
+				return new ByteSequence(slice(m_window, nStart, nEnd), m_charset);
+			}
+		};
+	}
+	
+	/**
+	 * Splits the file in regions of nearly equal sizes, 
+	 * each one beginning at the start of a line
+	 */
+	@Override
+	public List<Iterable<CharSequence>> split(int nParts)
+	{
+		long nLength = m_nEnd - m_nBegin;
+		long countParts = Math.max(1, Math.min(nParts, nLength));
+		List<Iterable<CharSequence>> parts = new ArrayList<Iterable<CharSequence>>((int) countParts);
+		long nPartBegin = m_nBegin;
+		for ( long i = 1; i <= countParts; i += 1 )
+		{
+			long nBound = ( i == countParts ) ? m_nEnd : nextLineStart(m_nBegin + nLength * i / countParts);
+			if ( nBound > nPartBegin || parts.isEmpty() && i == countParts )
+			{
+				parts.add(new MappedLines(m_path, m_charset, nPartBegin, nBound, m_nSegmentSize));
+				nPartBegin = nBound;
+			}
+		}
+		return parts;
+	}
+	
+	/**
+	 * @return the offset of the first line starting at or after nOffset,
+	 *         or the end of the region
+	 */
+	private long nextLineStart(long nOffset)
+	{
+		if ( nOffset <= m_nBegin )
+		{
+			return m_nBegin;
+		}
+		long nPosition = nOffset - 1;
+		while ( nPosition < m_nEnd )
+		{
+			ByteBuffer probe = mapWindow(nPosition, PROBE_SIZE);
+			for ( int i = 0; i < probe.limit(); i += 1 )
+			{
+				if ( probe.get(i) == '\n' )
+				{
+					return nPosition + i + 1;
+				}
+			}
+			nPosition += probe.limit();
+		}
+		return m_nEnd;
+	}
+}
@@ -0,0 +1,186 @@
+package fr.cantor.functional.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.exceptions.FunctionalRuntimeException;
+
+/**
+ * The binary records of a file, read through memory mapped windows.
+ * Each record is a read-only ByteBuffer viewing the mapped bytes.
+ * Records either all have the same size, or are each preceded by their
+ * length as a big-endian int.
+ * Files of fixed-size records have a known size and are split on record
+ * boundaries; length-prefixed files can only be read sequentially.
+ */
+public class MappedRecords extends MappedFile<ByteBuffer>
+{
+	private static final int LENGTH_PREFIXED = 0;
+	private static final int PREFIX_SIZE = 4;
+	
+	// Size of each record, or LENGTH_PREFIXED
+	private final int m_nRecordSize;
+	
+	/**
+	 * @param path file to read
+	 * @param nRecordSize size of every record, trailing bytes not filling 
+	 *                    a whole record are ignored
+	 * @return the records of the file
+	 */
+	public static MappedRecords fixed(Path path, int nRecordSize)
+	{
+		if ( nRecordSize <= 0 )
+		{
+			throw new IllegalArgumentException("Record size must be positive: " + nRecordSize);
+		}
+		long nLength = length(path);
+		return new MappedRecords(path, 0, nLength - nLength % nRecordSize, DEFAULT_SEGMENT_SIZE, nRecordSize);
+	}
+	
+	/**
+	 * @param path file to read, where each record is preceded by its length 
+	 *             as a big-endian int
+	 * @return the records of the file, without their length
+	 */
+	public static MappedRecords lengthPrefixed(Path path)
+	{
+		return new MappedRecords(path, 0, length(path), DEFAULT_SEGMENT_SIZE, LENGTH_PREFIXED);
+	}
+	
+	private MappedRecords(Path path, long nBegin, long nEnd, int nSegmentSize, int nRecordSize)
+	{
+		super(path, nBegin, nEnd, nSegmentSize);
+		m_nRecordSize = nRecordSize;
+	}
+	
+	/**
+	 * @param nSegmentSize size of the mapped windows
+	 * @return the same records read through windows of another size
+	 */
+	public MappedRecords withSegmentSize(int nSegmentSize)
+	{
+		return new MappedRecords(m_path, m_nBegin, m_nEnd, nSegmentSize, m_nRecordSize);
+	}
+	
+	public Iterator<ByteBuffer> iterator()
+	{
+		return new Iterator<ByteBuffer>()
+		{
+			// Offset in the file of the next record, or of its length
+			private long m_nPosition = m_nBegin;
+			private ByteBuffer m_window = null;
+			private long m_nWindowStart;
+			
+			public boolean hasNext()
+			{
+				return m_nPosition < m_nEnd;
+			}
+			
+			public ByteBuffer next()
+			{
+				if ( !hasNext() )
+				{
+					throw new NoSuchElementException();
+				}
+				if ( m_nRecordSize != LENGTH_PREFIXED )
+				{
+					if ( !contains(m_nRecordSize) )
+					{
+						// Windows hold whole records
+						remap(Math.max(1, m_nSegmentSize / m_nRecordSize) * (long) m_nRecordSize);
+					}
+					return record(0, m_nRecordSize);
+				}
+				if ( !contains(PREFIX_SIZE) )
+				{
+					remap(Math.max(m_nSegmentSize, PREFIX_SIZE));
+				}
+				if ( m_nEnd - m_nPosition < PREFIX_SIZE )
+				{
+					throw new FunctionalRuntimeException("Truncated length at offset " + m_nPosition + " in " + m_path);
+				}
+				int nLength = m_window.getInt((int) (m_nPosition - m_nWindowStart));
+				if ( nLength < 0 || m_nEnd - m_nPosition - PREFIX_SIZE < nLength )
+				{
+					throw new FunctionalRuntimeException("Invalid record length " + nLength + " at offset " + m_nPosition + " in " + m_path);
+				}
+				if ( !contains(PREFIX_SIZE + (long) nLength) )
+				{
+					remap(Math.max(m_nSegmentSize, PREFIX_SIZE + (long) nLength));
+				}
+				return record(PREFIX_SIZE, nLength);
+			}
+			
+			/**
+			 * @return true if the current window holds nSize bytes from the current position
+			 */
+			private boolean contains(long nSize)
+			{
+				return m_window != null && m_nPosition >= m_nWindowStart 
+						&& m_nPosition + nSize <= m_nWindowStart + m_window.limit();
+			}
+			
+			private void remap(long nSize)
+			{
+				m_window = mapWindow(m_nPosition, nSize);
+				m_nWindowStart = m_nPosition;
+			}
+			
+			/**
+			 * @return the record at nSkip bytes from the current position, moving after it
+			 */
+			private ByteBuffer record(int nSkip, int nLength)
+			{
+				int nStart = (int) (m_nPosition - m_nWindowStart) + nSkip;
+				m_nPosition += nSkip + nLength;
+				return slice(m_window, nStart, nStart + nLength).asReadOnlyBuffer();
+			}
+		};
+	}
+	
+	/**
+	 * @return the number of fixed-size records, 
+	 *         -1 for length-prefixed records or more than Integer.MAX_VALUE records
+	 */
+	@Override
+	public int size()
+	{
+		if ( m_nRecordSize == LENGTH_PREFIXED )
+		{
+			return -1;
+		}
+		long count = (m_nEnd - m_nBegin) / m_nRecordSize;
+		return ( count > Integer.MAX_VALUE ) ? -1 : (int) count;
+	}
+	
+	/**
+	 * Splits fixed-size records in contiguous parts of nearly equal sizes. 
+	 * Length-prefixed records cannot be split since their boundaries are 
+	 * only known by reading every length.
+	 */
+	@Override
+	public List<Iterable<ByteBuffer>> split(int nParts)
+	{
+		if ( m_nRecordSize == LENGTH_PREFIXED )
+		{
+			return null;
+		}
+		long count = (m_nEnd - m_nBegin) / m_nRecordSize;
+		long countParts = Math.max(1, Math.min(nParts, count));
+		List<Iterable<ByteBuffer>> parts = new ArrayList<Iterable<ByteBuffer>>((int) countParts);
+		long nPartBegin = m_nBegin;
+		for ( long i = 0; i < countParts; i += 1 )
+		{
+			long countRecords = count / countParts + (i < count % countParts ? 1 : 0);
+			long nPartEnd = nPartBegin + countRecords * m_nRecordSize;
+			parts.add(new MappedRecords(m_path, nPartBegin, nPartEnd, m_nSegmentSize, m_nRecordSize));
+			nPartBegin = nPartEnd;
+		}
+		return parts;
+	}
+}
@@ -0,0 +1,47 @@
+package fr.cantor.functional.io;
+
+import java.nio.ByteBuffer;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+
+/**
+ * Encodes each element as a binary record preceded by its length as a 
+ * big-endian int, the format read by MappedRecords.lengthPrefixed().
+ * The payload of the record is written by another encoder.
+ */
+public class RecordEncoder<T> implements Encoder<T>
+{
+	private static final int PREFIX_SIZE = 4;
+	
+	private final Encoder<T> m_payload;
+	
+	/**
+	 * @param payload encoder writing the content of each record
+	 */
+	public RecordEncoder(Encoder<T> payload)
+	{
+		m_payload = payload;
+	}
+	
+	/**
+	 * @return an encoder writing the remaining bytes of each buffer as a record
+	 */
+	public static RecordEncoder<ByteBuffer> bytes()
+	{
+		return new RecordEncoder<ByteBuffer>(new Encoder<ByteBuffer>()
+		{
+			public void encode(ByteBuffer bytes, ByteBuffer buffer)
+			{
+				buffer.put(bytes.duplicate());
+			}
+		});
+	}
+	
+	public void encode(T t, ByteBuffer buffer) throws FunctionalException
+	{
+		int nStart = buffer.position();
+		buffer.putInt(0);
+		m_payload.encode(t, buffer);
+		buffer.putInt(nStart, buffer.position() - nStart - PREFIX_SIZE);
+	}
+}
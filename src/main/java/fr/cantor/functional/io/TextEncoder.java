@@ -0,0 +1,68 @@
+package fr.cantor.functional.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes each element as the text of toString() followed by a line 
+ * separator. ASCII characters are written directly into the buffer 
+ * when the charset is ASCII compatible, without any intermediate String.
+ */
+public class TextEncoder<T> implements Encoder<T>
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final Charset m_charset;
+	private final byte[] m_separator;
+	private final boolean m_bAsciiCompatible;
+	
+	/**
+	 * Encodes in UTF-8, one element per line
+	 */
+	public TextEncoder()
+	{
+		this(UTF8, "\n");
+	}
+	
+	/**
+	 * @param charset charset of the written text
+	 * @param separator written after each element
+	 */
+	public TextEncoder(Charset charset, String separator)
+	{
+		m_charset = charset;
+		m_separator = separator.getBytes(charset);
+		m_bAsciiCompatible = charset.equals(UTF8) || charset.name().equals("US-ASCII") || charset.name().equals("ISO-8859-1");
+	}
+	
+	public void encode(T t, ByteBuffer buffer)
+	{
+		CharSequence text = ( t instanceof CharSequence ) ? (CharSequence) t : String.valueOf(t);
+		if ( !m_bAsciiCompatible || !putAscii(text, buffer) )
+		{
+			buffer.put(text.toString().getBytes(m_charset));
+		}
+		buffer.put(m_separator);
+	}
+	
+	/**
+	 * @return true if every character was ASCII and has been written,
+	 *         false if nothing was written
+	 */
+	private static boolean putAscii(CharSequence text, ByteBuffer buffer)
+	{
+		int nMark = buffer.position();
+		int nLength = text.length();
+		for ( int i = 0; i < nLength; i += 1 )
+		{
+			char c = text.charAt(i);
+			if ( c >= 0x80 )
+			{
+				buffer.position(nMark);
+				return false;
+			}
+			buffer.put((byte) c);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,82 @@
+package fr.cantor.functional.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in buckets of powers of two nanoseconds,
+ * cheap enough to be updated concurrently from every worker.
+ * Percentiles are approximated by the upper bound of their bucket.
+ */
+public class Histogram
+{
+	private static final int BUCKETS = 64;
+	
+	private final LongAdder[] m_buckets = new LongAdder[BUCKETS];
+	
+	public Histogram()
+	{
+		for ( int i = 0; i < BUCKETS; i += 1 )
+		{
+			m_buckets[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * @param nNanos duration to record
+	 */
+	public void record(long nNanos)
+	{
+		m_buckets[BUCKETS - Long.numberOfLeadingZeros(Math.max(nNanos, 1))].increment();
+	}
+	
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long count()
+	{
+		long count = 0;
+		for ( LongAdder bucket : m_buckets )
+		{
+			count += bucket.sum();
+		}
+		return count;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket of this percentile, 0 if nothing was recorded
+	 */
+	public long percentile(double percentile)
+	{
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for ( int i = 0; i < BUCKETS; i += 1 )
+		{
+			counts[i] = m_buckets[i].sum();
+			total += counts[i];
+		}
+		if ( total == 0 )
+		{
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long count = 0;
+		for ( int i = 0; i < BUCKETS; i += 1 )
+		{
+			count += counts[i];
+			if ( count >= rank && counts[i] > 0 )
+			{
+				return ( i == BUCKETS - 1 ) ? Long.MAX_VALUE : (1L << i) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+	
+	public void reset()
+	{
+		for ( LongAdder bucket : m_buckets )
+		{
+			bucket.reset();
+		}
+	}
+}
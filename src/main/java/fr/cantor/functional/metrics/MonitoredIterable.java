@@ -0,0 +1,138 @@
+package fr.cantor.functional.metrics;
+
+import java.util.List;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.predicates.Predicate1;
+
+/**
+ * An Iterable recording metrics for the map(), flatMap(), select(), reject()
+ * and inject() stages chained after it. Each stage reports under the name of
+ * the pipeline and its position in the chain, so rebuilding the same 
+ * chain reports to the same MBeans.
+ * ConcurrentIterable also records the activity of its workers when it
+ * runs a MonitoredIterable.
+ * 
+ * @see fr.cantor.functional.Iterable#monitor(String)
+ */
+public class MonitoredIterable<T> extends Iterable<T>
+{
+	private final Iterable<T> m_iterable;
+	private final PipelineMetrics m_metrics;
+	private final int m_nStage;
+	
+	/**
+	 * @param iterable the monitored Iterable
+	 * @param metrics metrics of the pipeline
+	 * @param nStage position of the next stage
+	 */
+	public MonitoredIterable(Iterable<T> iterable, PipelineMetrics metrics, int nStage)
+	{
+		m_iterable = iterable;
+		m_metrics = metrics;
+		m_nStage = nStage;
+	}
+	
+	/**
+	 * @return the monitored Iterable, whose stages already record their metrics
+	 */
+	public Iterable<T> getIterable()
+	{
+		return m_iterable;
+	}
+	
+	public PipelineMetrics getMetrics()
+	{
+		return m_metrics;
+	}
+	
+	/**
+	 * @return the injecter recording its calls as the next stage
+	 */
+	public <V> Function2<V, V, T> monitor(Function2<V, V, T> injecter)
+	{
+		return m_metrics.stage(m_nStage, "inject").wrap(injecter);
+	}
+	
+	public Iterator<T> iterator()
+	{
+		return m_iterable.iterator();
+	}
+	
+	@Override
+	public boolean push(Sink<T> sink) throws FunctionalException
+	{
+		return m_iterable.push(sink);
+	}
+	
+	@Override
+	public int size()
+	{
+		return m_iterable.size();
+	}
+	
+	@Override
+	public int estimateSize()
+	{
+		return m_iterable.estimateSize();
+	}
+	
+	@Override
+	public int characteristics()
+	{
+		return m_iterable.characteristics();
+	}
+	
+	@Override
+	public List<Iterable<T>> split(int nParts)
+	{
+		return m_iterable.split(nParts);
+	}
+	
+	@Override
+	public <V> Iterable<V> map(Function1<V, T> mapper)
+	{
+		return new MonitoredIterable<V>(m_iterable.map(m_metrics.stage(m_nStage, "map").wrap(mapper)), m_metrics, m_nStage + 1);
+	}
+	
+	/**
+	 * Records the calls creating the inner Iterables, not their iteration
+	 */
+	@Override
+	public <V> Iterable<V> flatMap(Function1<java.lang.Iterable<V>, T> mapper)
+	{
+		return new MonitoredIterable<V>(m_iterable.flatMap(m_metrics.stage(m_nStage, "flatMap").wrap(mapper)), m_metrics, m_nStage + 1);
+	}
+	
+	@Override
+	public Iterable<T> select(Predicate1<T> predicate)
+	{
+		return new MonitoredIterable<T>(m_iterable.select(m_metrics.stage(m_nStage, "select").wrap(predicate, true)), m_metrics, m_nStage + 1);
+	}
+	
+	@Override
+	public Iterable<T> reject(Predicate1<T> predicate)
+	{
+		return new MonitoredIterable<T>(m_iterable.reject(m_metrics.stage(m_nStage, "reject").wrap(predicate, false)), m_metrics, m_nStage + 1);
+	}
+	
+	@Override
+	public <V> V inject(V value, Function2<V, V, T> injecter) throws FunctionalException
+	{
+		return m_iterable.inject(value, monitor(injecter));
+	}
+	
+	/**
+	 * Following stages report under another name
+	 */
+	@Override
+	public Iterable<T> monitor(String name)
+	{
+		return new MonitoredIterable<T>(m_iterable, PipelineMetrics.get(name), 0);
+	}
+}
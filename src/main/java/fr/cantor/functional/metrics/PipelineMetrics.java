@@ -0,0 +1,113 @@
+package fr.cantor.functional.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of every stage and of the workers of a pipeline tagged by a name.
+ * Pipelines built several times with the same name share the same metrics, 
+ * registered once in the platform MBean server as
+ * fr.cantor.functional:type=Stage,pipeline=name,stage=index-kind and
+ * fr.cantor.functional:type=Workers,pipeline=name.
+ * 
+ * @see fr.cantor.functional.Iterable#monitor(String)
+ */
+public class PipelineMetrics
+{
+	public static final String DOMAIN = "fr.cantor.functional";
+	
+	private static final ConcurrentMap<String, PipelineMetrics> s_pipelines = new ConcurrentHashMap<String, PipelineMetrics>();
+	
+	private final String m_name;
+	private final ConcurrentMap<String, StageMetrics> m_stages = new ConcurrentHashMap<String, StageMetrics>();
+	private final WorkerMetrics m_workers;
+	
+	private PipelineMetrics(String name)
+	{
+		m_name = name;
+		m_workers = new WorkerMetrics(name);
+	}
+	
+	/**
+	 * @param name stable name of the pipeline
+	 * @return the metrics of this pipeline, registered on first use
+	 */
+	public static PipelineMetrics get(String name)
+	{
+		PipelineMetrics metrics = s_pipelines.get(name);
+		if ( metrics == null )
+		{
+			PipelineMetrics created = new PipelineMetrics(name);
+			metrics = s_pipelines.putIfAbsent(name, created);
+			if ( metrics == null )
+			{
+				metrics = created;
+				register("type=Workers,pipeline=" + ObjectName.quote(name), created.m_workers);
+			}
+		}
+		return metrics;
+	}
+	
+	public String getName()
+	{
+		return m_name;
+	}
+	
+	/**
+	 * @param nIndex position of the stage in the pipeline
+	 * @param kind kind of stage, like map or select
+	 * @return the metrics of this stage, registered on first use
+	 */
+	public StageMetrics stage(int nIndex, String kind)
+	{
+		String stage = nIndex + "-" + kind;
+		StageMetrics metrics = m_stages.get(stage);
+		if ( metrics == null )
+		{
+			StageMetrics created = new StageMetrics(m_name, stage);
+			metrics = m_stages.putIfAbsent(stage, created);
+			if ( metrics == null )
+			{
+				metrics = created;
+				register("type=Stage,pipeline=" + ObjectName.quote(m_name) + ",stage=" + stage, created);
+			}
+		}
+		return metrics;
+	}
+	
+	public WorkerMetrics getWorkers()
+	{
+		return m_workers;
+	}
+	
+	/**
+	 * Metrics are only published when possible: failing to register
+	 * them must not fail the pipeline.
+	 */
+	private static void register(String properties, Object mbean)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(mbean, new ObjectName(DOMAIN + ":" + properties));
+		}
+		catch ( InstanceAlreadyExistsException e )
+		{
+			// Registered by another class loader of the library
+		}
+		catch ( JMException e )
+		{
+			// Not published
+		}
+		catch ( SecurityException e )
+		{
+			// Not published
+		}
+	}
+}
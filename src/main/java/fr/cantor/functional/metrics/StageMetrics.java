@@ -0,0 +1,148 @@
+package fr.cantor.functional.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.predicates.Predicate1;
+
+/**
+ * Counts the elements entering and leaving a stage and the time spent
+ * in its user code. Every call is timed, and one call out of 
+ * SAMPLING_RATE is also recorded in the latency histogram.
+ */
+public class StageMetrics implements StageMetricsMBean
+{
+	static final int SAMPLING_RATE = 16;
+	
+	private final String m_pipeline;
+	private final String m_stage;
+	private final LongAdder m_in = new LongAdder();
+	private final LongAdder m_out = new LongAdder();
+	private final LongAdder m_nanos = new LongAdder();
+	private final Histogram m_latencies = new Histogram();
+	
+	StageMetrics(String pipeline, String stage)
+	{
+		m_pipeline = pipeline;
+		m_stage = stage;
+	}
+	
+	/**
+	 * @return a mapper recording its calls in these metrics
+	 */
+	public <R, T> Function1<R, T> wrap(final Function1<R, T> mapper)
+	{
+		return new Function1<R, T>()
+		{
+			public R call(T t) throws FunctionalException
+			{
+				long nStart = System.nanoTime();
+				R r = mapper.call(t);
+				record(nStart, true);
+				return r;
+			}
+		};
+	}
+	
+	/**
+	 * @return a predicate recording its calls in these metrics,
+	 *         an element leaves the stage when the predicate returns bKeep
+	 */
+	public <T> Predicate1<T> wrap(final Predicate1<T> predicate, final boolean bKeep)
+	{
+		return new Predicate1<T>()
+		{
+			public Boolean call(T t) throws FunctionalException
+			{
+				long nStart = System.nanoTime();
+				Boolean b = predicate.call(t);
+				record(nStart, b == bKeep);
+				return b;
+			}
+		};
+	}
+	
+	/**
+	 * @return an injecter recording its calls in these metrics
+	 */
+	public <V, T> Function2<V, V, T> wrap(final Function2<V, V, T> injecter)
+	{
+		return new Function2<V, V, T>()
+		{
+			public V call(V value, T t) throws FunctionalException
+			{
+				long nStart = System.nanoTime();
+				V v = injecter.call(value, t);
+				record(nStart, false);
+				return v;
+			}
+		};
+	}
+	
+	private void record(long nStart, boolean bOut)
+	{
+		long nNanos = System.nanoTime() - nStart;
+		m_in.increment();
+		if ( bOut )
+		{
+			m_out.increment();
+		}
+		m_nanos.add(nNanos);
+		if ( ThreadLocalRandom.current().nextInt(SAMPLING_RATE) == 0 )
+		{
+			m_latencies.record(nNanos);
+		}
+	}
+	
+	public String getPipeline()
+	{
+		return m_pipeline;
+	}
+	
+	public String getStage()
+	{
+		return m_stage;
+	}
+	
+	public long getElementsIn()
+	{
+		return m_in.sum();
+	}
+	
+	public long getElementsOut()
+	{
+		return m_out.sum();
+	}
+	
+	public long getTimeNanos()
+	{
+		return m_nanos.sum();
+	}
+	
+	public long getMeanTimeNanos()
+	{
+		long count = m_in.sum();
+		return ( count == 0 ) ? 0 : m_nanos.sum() / count;
+	}
+	
+	public long getLatencyMedianNanos()
+	{
+		return m_latencies.percentile(50);
+	}
+	
+	public long getLatency99thNanos()
+	{
+		return m_latencies.percentile(99);
+	}
+	
+	public void reset()
+	{
+		m_in.reset();
+		m_out.reset();
+		m_nanos.reset();
+		m_latencies.reset();
+	}
+}
@@ -0,0 +1,26 @@
+package fr.cantor.functional.metrics;
+
+/**
+ * JMX view of the metrics of a pipeline stage
+ * @see StageMetrics
+ */
+public interface StageMetricsMBean
+{
+	public String getPipeline();
+	
+	public String getStage();
+	
+	public long getElementsIn();
+	
+	public long getElementsOut();
+	
+	public long getTimeNanos();
+	
+	public long getMeanTimeNanos();
+	
+	public long getLatencyMedianNanos();
+	
+	public long getLatency99thNanos();
+	
+	public void reset();
+}
@@ -0,0 +1,101 @@
+package fr.cantor.functional.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Activity of the workers of a ConcurrentIterable: the time they spend
+ * running compared to the time they were given, and the time they spend
+ * waiting for the shared iterator of a source which cannot be split.
+ */
+public class WorkerMetrics implements WorkerMetricsMBean
+{
+	private final String m_pipeline;
+	private final LongAdder m_executions = new LongAdder();
+	private final LongAdder m_workers = new LongAdder();
+	private final LongAdder m_busyNanos = new LongAdder();
+	private final LongAdder m_availableNanos = new LongAdder();
+	private final LongAdder m_lockWaitNanos = new LongAdder();
+	
+	WorkerMetrics(String pipeline)
+	{
+		m_pipeline = pipeline;
+	}
+	
+	/**
+	 * Records one concurrent execution
+	 * @param countWorkers number of workers
+	 * @param nNanos duration of the whole execution
+	 */
+	public void recordExecution(int countWorkers, long nNanos)
+	{
+		m_executions.increment();
+		m_workers.add(countWorkers);
+		m_availableNanos.add(countWorkers * nNanos);
+	}
+	
+	/**
+	 * @param nNanos time spent by one worker
+	 */
+	public void recordBusy(long nNanos)
+	{
+		m_busyNanos.add(nNanos);
+	}
+	
+	/**
+	 * @param nNanos time spent in the lock of a shared iterator, 
+	 *               including reading the source under the lock
+	 */
+	public void recordLockWait(long nNanos)
+	{
+		m_lockWaitNanos.add(nNanos);
+	}
+	
+	public String getPipeline()
+	{
+		return m_pipeline;
+	}
+	
+	public long getExecutions()
+	{
+		return m_executions.sum();
+	}
+	
+	public long getWorkers()
+	{
+		return m_workers.sum();
+	}
+	
+	public long getBusyNanos()
+	{
+		return m_busyNanos.sum();
+	}
+	
+	public long getAvailableNanos()
+	{
+		return m_availableNanos.sum();
+	}
+	
+	/**
+	 * @return the part of the time given to workers they spent running,
+	 *         low when workers wait for a thread of a busy executor
+	 */
+	public double getUtilization()
+	{
+		long nAvailable = m_availableNanos.sum();
+		return ( nAvailable == 0 ) ? 0 : Math.min(1.0, (double) m_busyNanos.sum() / nAvailable);
+	}
+	
+	public long getLockWaitNanos()
+	{
+		return m_lockWaitNanos.sum();
+	}
+	
+	public void reset()
+	{
+		m_executions.reset();
+		m_workers.reset();
+		m_busyNanos.reset();
+		m_availableNanos.reset();
+		m_lockWaitNanos.reset();
+	}
+}
@@ -0,0 +1,24 @@
+package fr.cantor.functional.metrics;
+
+/**
+ * JMX view of the metrics of the workers of a ConcurrentIterable
+ * @see WorkerMetrics
+ */
+public interface WorkerMetricsMBean
+{
+	public String getPipeline();
+	
+	public long getExecutions();
+	
+	public long getWorkers();
+	
+	public long getBusyNanos();
+	
+	public long getAvailableNanos();
+	
+	public double getUtilization();
+	
+	public long getLockWaitNanos();
+	
+	public void reset();
+}
@@ -0,0 +1,485 @@
+package fr.cantor.functional.test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.concurrent.ConcurrentIterable;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.operators.IntegerAdd;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.IndexedProcedure1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
+public class TestConcurrentIterable
+{
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return n * n;
+		}
+	};
+	
+	private static final Predicate1<Integer> ODD = new Predicate1<Integer>()
+	{
+		public Boolean call(Integer n)
+		{
+			return n % 2 == 1;
+		}
+	};
+	
+	@Test
+	public void testDumpSplittable() throws FunctionalException
+	{
+		Iterable<Integer> squares = new Range(1000).map(SQUARE);
+		List<Integer> expected = squares.dump(new ArrayList<Integer>());
+		List<Integer> actual = squares.concurrently(4).dump(new ArrayList<Integer>());
+		Collections.sort(actual);
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testFailureStopsWorkers()
+	{
+		final AtomicInteger active = new AtomicInteger();
+		try
+		{
+			new Range(4000).concurrently(4).map(new Function1<Integer, Integer>()
+			{
+				public Integer call(Integer n) throws FunctionalException
+				{
+					active.incrementAndGet();
+					try
+					{
+						if ( n == 10 )
+						{
+							throw new FunctionalException("plop");
+						}
+						// Busy enough for the other parts to be running when the first one fails
+						long nEnd = System.nanoTime() + 100000;
+						while ( System.nanoTime() < nEnd )
+						{
+							Thread.onSpinWait();
+						}
+						return n;
+					}
+					finally
+					{
+						active.decrementAndGet();
+					}
+				}
+			}).dump(new ArrayList<Integer>());
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+		// The other workers were stopped before the error was thrown
+		Assert.assertEquals(0, active.get());
+	}
+	
+	@Test
+	public void testInjectWithCombiner() throws FunctionalException
+	{
+		Assert.assertEquals(Integer.valueOf(5050), new Range(1, 100).concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		Iterable<Integer> shared = Iterable.wrap(new Range(1, 100).dump(new ArrayList<Integer>()));
+		Assert.assertEquals(Integer.valueOf(5050), shared.concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		Assert.assertEquals(Integer.valueOf(5050), shared.concurrently(4).inject(0, new IntegerAdd()));
+	}
+	
+	@Test
+	public void testAnyAll() throws FunctionalException
+	{
+		Predicate1<Integer> isBig = new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n > 990;
+			}
+		};
+		Assert.assertTrue(new Range(1000).concurrently(4).any(isBig));
+		Assert.assertFalse(new Range(1000).concurrently(4).all(isBig));
+		Assert.assertTrue(new Range(991, 1000).concurrently(4).all(isBig));
+		Assert.assertFalse(new Range(990).concurrently(4).any(isBig));
+	}
+	
+	@Test
+	public void testJoin() throws FunctionalException
+	{
+		Assert.assertEquals(new Range(100).join(","), new Range(100).concurrently(4).join(","));
+		Assert.assertEquals("", new Range(0).concurrently(4).join(","));
+		// Parts without elements or elements without text
+		Assert.assertEquals("0,1", new Range(2).concurrently(4).join(","));
+		Iterable<String> empties = Iterable.wrap(Arrays.asList("", "", "a", ""));
+		Assert.assertEquals(",,a,", empties.concurrently(4).join(","));
+		
+		Iterable<Integer> squares = new Range(100000).map(SQUARE);
+		String expected = squares.join(",");
+		Assert.assertEquals(expected, squares.concurrently(4).join(",", new StringBuilder()).toString());
+		Assert.assertEquals(",,a,", empties.concurrently(4).join(",", new StringBuilder()).toString());
+		StringWriter writer = new StringWriter();
+		Iterable<Integer> shared = Iterable.wrap(new LinkedList<Integer>(new Range(1000).dump(new ArrayList<Integer>())));
+		Assert.assertSame(writer, shared.map(SQUARE).concurrently(4).join(",", writer));
+		Assert.assertEquals(new Range(1000).map(SQUARE).join(","), writer.toString());
+	}
+
+	@Test
+	public void testGroupBy() throws FunctionalException
+	{
+		Function1<Integer, Integer> lastDigit = new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n)
+			{
+				return n % 10;
+			}
+		};
+		Iterable<Integer> squares = new Range(10000).map(SQUARE);
+		// Partial maps are merged in the order of the parts
+		Assert.assertEquals(squares.groupBy(lastDigit), squares.concurrently(4).groupBy(lastDigit));
+		Assert.assertEquals(squares.countBy(lastDigit), squares.concurrently(4).countBy(lastDigit));
+		Assert.assertEquals(squares.partition(ODD).first, squares.concurrently(4).partition(ODD).first);
+		Assert.assertEquals(squares.aggregateBy(lastDigit, 0, new IntegerAdd()), squares.concurrently(4).aggregateBy(lastDigit, 0, new IntegerAdd(), new IntegerAdd()));
+		Assert.assertEquals(squares.aggregateBy(lastDigit, 0, new IntegerAdd()), squares.concurrently(4).aggregateBy(lastDigit, 0, new IntegerAdd()));
+		Assert.assertEquals(squares.aggregateBy(lastDigit, 0, new IntegerAdd()), squares.concurrently(4).ordered().aggregateBy(lastDigit, 0, new IntegerAdd()));
+		
+		Iterable<Integer> shared = Iterable.wrap(new LinkedList<Integer>(new Range(10000).dump(new ArrayList<Integer>())));
+		Map<Integer, Long> counts = shared.concurrently(4).countBy(lastDigit);
+		Assert.assertEquals(10, counts.size());
+		Assert.assertEquals(Long.valueOf(1000), counts.get(7));
+		Assert.assertEquals(5000, shared.concurrently(4).partition(ODD).second.size());
+		Assert.assertTrue(new Range(0).concurrently(4).countBy(lastDigit).isEmpty());
+		
+		try
+		{
+			new Range(100).concurrently(4).aggregateBy(lastDigit, 0, new Function2<Integer, Integer, Integer>()
+			{
+				public Integer call(Integer sum, Integer n) throws FunctionalException
+				{
+					throw new FunctionalException("plop");
+				}
+			});
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+		
+		// Null keys and values are kept, as in the sequential version
+		Function1<Integer, Integer> tens = new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n)
+			{
+				return ( n % 10 == 0 ) ? null : n % 10;
+			}
+		};
+		Function2<Integer, Integer, Integer> sumOrNull = new Function2<Integer, Integer, Integer>()
+		{
+			public Integer call(Integer sum, Integer n)
+			{
+				return ( n % 10 == 5 ) ? null : sum + n;
+			}
+		};
+		Map<Integer, Integer> sums = new Range(1, 100).aggregateBy(tens, 0, new IntegerAdd());
+		Assert.assertEquals(Integer.valueOf(550), sums.get(null));
+		Assert.assertEquals(sums, new Range(1, 100).concurrently(4).aggregateBy(tens, 0, new IntegerAdd()));
+		Assert.assertEquals(new ArrayList<Integer>(sums.keySet()), new ArrayList<Integer>(new Range(1, 100).concurrently(4).ordered().aggregateBy(tens, 0, new IntegerAdd()).keySet()));
+		Assert.assertNull(new Range(1, 5).concurrently(4).aggregateBy(tens, 0, sumOrNull).get(5));
+	}
+	
+	@Test
+	public void testFlatMap() throws FunctionalException
+	{
+		Function1<java.lang.Iterable<Integer>, Integer> upTo = new Function1<java.lang.Iterable<Integer>, Integer>()
+		{
+			public java.lang.Iterable<Integer> call(Integer n)
+			{
+				return new Range(n);
+			}
+		};
+		Iterable<Integer> expanded = new Range(200).flatMap(upTo);
+		List<Integer> expected = expanded.dump(new ArrayList<Integer>());
+		Assert.assertEquals(expected, expanded.concurrently(4).ordered().dump(new ArrayList<Integer>()));
+		Assert.assertEquals(expected, new Range(200).concurrently(4).ordered().flatMap(upTo).dump(new ArrayList<Integer>()));
+		Assert.assertEquals(expanded.inject(0, new IntegerAdd()), expanded.concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		
+		// Threads share the source and expand its elements outside of the lock
+		Iterable<Integer> shared = Iterable.wrap(new LinkedList<Integer>(new Range(200).dump(new ArrayList<Integer>())));
+		List<Integer> actual = shared.map(SQUARE).flatMap(upTo).map(SQUARE).concurrently(4).dump(new ArrayList<Integer>());
+		List<Integer> squares = new Range(200).map(SQUARE).flatMap(upTo).map(SQUARE).dump(new ArrayList<Integer>());
+		Collections.sort(actual);
+		Collections.sort(squares);
+		Assert.assertEquals(squares, actual);
+		
+		Iterable<Integer> concatenated = Iterable.concat(new Range(1000), shared, new Range(1000, 1999));
+		Assert.assertEquals(concatenated.inject(0, new IntegerAdd()), concatenated.concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+	}
+	
+	@Test
+	public void testExecutors() throws FunctionalException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try
+		{
+			Assert.assertEquals(Integer.valueOf(5050), new Range(1, 100).concurrently(executor).inject(0, new IntegerAdd(), new IntegerAdd()));
+			Assert.assertEquals(Integer.valueOf(5050), new Range(1, 100).concurrently(pool).inject(0, new IntegerAdd(), new IntegerAdd()));
+		}
+		finally
+		{
+			executor.shutdown();
+			pool.shutdown();
+		}
+		
+		// Like the previous default pool after DefaultExecutor.configure(),
+		// a pool shut down leaves the work to the calling thread
+		Assert.assertEquals(Integer.valueOf(5050), new ConcurrentIterable<Integer>(new Range(1, 100), executor, 4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		Assert.assertEquals(new Range(1, 100).map(SQUARE).dump(new ArrayList<Integer>()), new ConcurrentIterable<Integer>(new Range(1, 100), executor, 4).ordered().map(SQUARE).dump(new ArrayList<Integer>()));
+	}
+	
+	@Test
+	public void testNested() throws FunctionalException
+	{
+		// Every thread of the default pool waits for nested iterations
+		Integer sum = new Range(1, 16).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				return new Range(1, n).concurrently().inject(0, new IntegerAdd(), new IntegerAdd());
+			}
+		}).concurrently().inject(0, new IntegerAdd(), new IntegerAdd());
+		Assert.assertEquals(Integer.valueOf(816), sum);
+	}
+
+	@Test
+	public void testVirtual() throws FunctionalException
+	{
+		// Every call waits until 16 of them are running at the same time
+		final CountDownLatch together = new CountDownLatch(16);
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		Iterable<Integer> slow = Iterable.wrap(new Range(64).dump(new ArrayList<Integer>())).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				try
+				{
+					together.countDown();
+					if ( !together.await(10, TimeUnit.SECONDS) )
+					{
+						throw new FunctionalException("Calls do not run concurrently");
+					}
+					Thread.sleep(10);
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FunctionalException(e);
+				}
+				finally
+				{
+					active.decrementAndGet();
+				}
+				return n;
+			}
+		});
+		List<Integer> actual = slow.concurrently().virtual(32).dump(new ArrayList<Integer>());
+		Collections.sort(actual);
+		Assert.assertEquals(new Range(64).dump(new ArrayList<Integer>()), actual);
+		Assert.assertTrue(maxActive.get() >= 16);
+		Assert.assertTrue(maxActive.get() <= 32);
+	}
+
+	@Test
+	public void testFirst() throws FunctionalException
+	{
+		final AtomicInteger counter = new AtomicInteger();
+		Predicate1<Integer> isMultipleOf1000 = new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				counter.incrementAndGet();
+				return n > 0 && n % 1000 == 0;
+			}
+		};
+		Assert.assertEquals(Integer.valueOf(1000), new Range(10000000).concurrently(4).first(isMultipleOf1000));
+		// Other threads have been stopped long before the end of their part
+		Assert.assertTrue(counter.get() < 10000000);
+		Assert.assertNull(new Range(999).concurrently(4).first(isMultipleOf1000));
+	}
+
+	@Test
+	public void testOrdered() throws FunctionalException
+	{
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		Iterable<Integer> numbers = Iterable.wrap(new Range(200).dump(new ArrayList<Integer>()));
+		Iterable<Integer> squares = numbers.map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				int count = inFlight.incrementAndGet();
+				maxInFlight.accumulateAndGet(count, Math::max);
+				try
+				{
+					// Makes some elements much slower than others
+					Thread.sleep(n % 10 == 0 ? 20 : 1);
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FunctionalException(e);
+				}
+				inFlight.decrementAndGet();
+				return n * n;
+			}
+		});
+		List<Integer> expected = new Range(200).map(SQUARE).dump(new ArrayList<Integer>());
+		Assert.assertEquals(expected, squares.concurrently(4).ordered(8).dump(new ArrayList<Integer>()));
+		Assert.assertTrue(maxInFlight.get() <= 8);
+		Assert.assertEquals(new Range(200).map(SQUARE).join(","), squares.concurrently(4).ordered(8).join(","));
+		Assert.assertEquals(Integer.valueOf(1521), squares.concurrently(4).ordered().first(new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n > 1500;
+			}
+		}));
+		
+		// The window does not let more tasks run than there are threads
+		maxInFlight.set(0);
+		Assert.assertEquals(expected, squares.concurrently(2).ordered().dump(new ArrayList<Integer>()));
+		Assert.assertTrue(maxInFlight.get() <= 2);
+		maxInFlight.set(0);
+		Assert.assertEquals(expected, squares.concurrently().ordered().virtual(8).dump(new ArrayList<Integer>()));
+		Assert.assertTrue(maxInFlight.get() <= 8);
+	}
+	
+	@Test
+	public void testOrderedCancel() throws Exception
+	{
+		final AtomicInteger started = new AtomicInteger();
+		Function1<Integer, Integer> slow = new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				started.incrementAndGet();
+				try
+				{
+					Thread.sleep(20);
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FunctionalException(e);
+				}
+				return n;
+			}
+		};
+		// The runner would otherwise go on with the rest of the window
+		Assert.assertEquals(Integer.valueOf(0), new Range(1000).concurrently(2).ordered(16).map(slow).first());
+		Thread.sleep(100);
+		int count = started.get();
+		Thread.sleep(200);
+		Assert.assertEquals(count, started.get());
+		Assert.assertTrue(count < 16);
+		
+		started.set(0);
+		try
+		{
+			new Range(1000).concurrently(2).ordered(16).map(slow).each(new Procedure1<Integer>()
+			{
+				public Void call(Integer n) throws FunctionalException
+				{
+					throw new FunctionalException("plop");
+				}
+			});
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+		Thread.sleep(100);
+		count = started.get();
+		Thread.sleep(200);
+		Assert.assertEquals(count, started.get());
+		Assert.assertTrue(count < 16);
+	}
+	
+	@Test
+	public void testOrderedEach() throws FunctionalException
+	{
+		final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+		Iterable<Integer> squares = Iterable.wrap(new Range(200).dump(new ArrayList<Integer>())).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				threads.add(Thread.currentThread());
+				try
+				{
+					Thread.sleep(1);
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FunctionalException(e);
+				}
+				return n * n;
+			}
+		});
+		final List<Integer> actual = new ArrayList<Integer>();
+		squares.concurrently(4).ordered().each(new Procedure1<Integer>()
+		{
+			public Void call(Integer n)
+			{
+				actual.add(n);
+				return null;
+			}
+		});
+		Assert.assertEquals(new Range(200).map(SQUARE).dump(new ArrayList<Integer>()), actual);
+		Assert.assertTrue(threads.size() > 1);
+	}
+	
+	@Test
+	public void testMapWithIndex() throws FunctionalException
+	{
+		final int[] an = new int[10000];
+		new Range(10000).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				return n * 2;
+			}
+		}).concurrently(4).eachWithIndex(new IndexedProcedure1<Integer>()
+		{
+			public Void call(int nIndex, Integer n) throws FunctionalException
+			{
+				an[nIndex] = n;
+				return null;
+			}
+		});
+		for ( int i = 0; i < an.length; i += 1 )
+		{
+			Assert.assertEquals(2 * i, an[i]);
+		}
+	}
+}
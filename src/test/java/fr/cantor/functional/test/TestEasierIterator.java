@@ -1,11 +1,16 @@
 package fr.cantor.functional.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import fr.cantor.functional.EasierIterator;
 import fr.cantor.functional.Iterator;
 import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.procedures.Procedure1;
 
 public class TestEasierIterator
 {
@@ -60,4 +65,51 @@ public class TestEasierIterator
 		Assert.assertFalse(iterator.hasNext());
 		Assert.assertFalse(iterator.hasNext());
 	}
+	
+	@Test
+	public void testTryAdvance() throws FunctionalException
+	{
+		final List<Integer> received = new ArrayList<Integer>();
+		Procedure1<Integer> receive = new Procedure1<Integer>()
+		{
+			public Void call(Integer n)
+			{
+				received.add(n);
+				return null;
+			}
+		};
+		Iterator<Integer> iterator = new EasierIterator<Integer>()
+		{
+			@Override
+			protected Integer getCurrent() throws FunctionalException
+			{
+				return 1000 + m_count;
+			}
+			@Override
+			protected boolean moveNext() throws FunctionalException
+			{
+				m_count += 1;
+				if ( m_count == 3 )
+				{
+					throw new FunctionalException("plop");
+				}
+				return true;
+			}
+			int m_count = 0;
+		};
+		
+		Assert.assertTrue(iterator.tryAdvance(receive));
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertTrue(iterator.tryAdvance(receive));
+		Assert.assertEquals(Arrays.asList(1001, 1002), received);
+		try
+		{
+			iterator.tryAdvance(receive);
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+	}
 }
@@ -0,0 +1,83 @@
+package fr.cantor.functional.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.IntIterator;
+import fr.cantor.functional.IntRange;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.IntFunction1;
+import fr.cantor.functional.functions.ToIntFunction1;
+import fr.cantor.functional.functions.operators.IntegerAdd;
+import fr.cantor.functional.functions.operators.IntegerMultiply;
+import fr.cantor.functional.functions.predicates.IntPredicate1;
+
+public class TestIntRange
+{
+	private static final IntPredicate1 EVEN = new IntPredicate1()
+	{
+		public boolean call(int n) throws FunctionalException
+		{
+			return n % 2 == 0;
+		}
+	};
+	
+	@Test
+	public void testIterator()
+	{
+		IntIterator iterator = new IntRange(3, 5).iterator();
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertEquals(3, iterator.nextInt());
+		Assert.assertEquals(4, iterator.nextInt());
+		Assert.assertEquals(5, iterator.nextInt());
+		Assert.assertFalse(iterator.hasNext());
+		Assert.assertFalse(new IntRange(0).iterator().hasNext());
+	}
+	
+	@Test
+	public void testLastInteger()
+	{
+		Assert.assertEquals(2, new IntRange(Integer.MAX_VALUE - 1, Integer.MAX_VALUE).count());
+		Assert.assertEquals(2, new IntRange(Integer.MAX_VALUE - 1, Integer.MAX_VALUE).toArray().length);
+		Assert.assertEquals(Integer.MAX_VALUE, new IntRange(0, Integer.MAX_VALUE - 1).count());
+		Assert.assertEquals(-1, new IntRange(-2, Integer.MAX_VALUE).count());
+		Assert.assertEquals(-1, new IntRange(Integer.MIN_VALUE, Integer.MAX_VALUE).count());
+		Assert.assertEquals(0, new IntRange(5, 2).count());
+	}
+	
+	@Test
+	public void testInject() throws FunctionalException
+	{
+		Assert.assertEquals(5050, new IntRange(1, 100).inject(0, new IntegerAdd()));
+		Assert.assertEquals(720, new IntRange(1, 6).inject(1, new IntegerMultiply()));
+		Assert.assertEquals(2550, new IntRange(1, 100).select(EVEN).inject(0, new IntegerAdd()));
+		Assert.assertEquals(2500, new Range(1, 100).ints().reject(EVEN).sum());
+	}
+	
+	@Test
+	public void testMap() throws FunctionalException
+	{
+		int[] an = new IntRange(4).map(new IntFunction1()
+		{
+			public int call(int n) throws FunctionalException
+			{
+				return n * n;
+			}
+		}).toArray();
+		Assert.assertArrayEquals(new int[]{ 0, 1, 4, 9 }, an);
+	}
+	
+	@Test
+	public void testBridges() throws FunctionalException
+	{
+		Assert.assertEquals("0,2,4", new IntRange(6).select(EVEN).boxed().join(","));
+		Assert.assertEquals(9, new Range(2, 4).mapToInt(new ToIntFunction1<Integer>()
+		{
+			public int call(Integer n) throws FunctionalException
+			{
+				return n;
+			}
+		}).sum());
+	}
+}
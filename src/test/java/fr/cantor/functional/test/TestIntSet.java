@@ -0,0 +1,68 @@
+package fr.cantor.functional.test;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.IntRange;
+import fr.cantor.functional.IntSet;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.predicates.IntPredicate1;
+
+public class TestIntSet
+{
+	private static IntPredicate1 multipleOf(final int n)
+	{
+		return new IntPredicate1()
+		{
+			public boolean call(int value) throws FunctionalException
+			{
+				return value % n == 0;
+			}
+		};
+	}
+	
+	@Test
+	public void testAdd()
+	{
+		IntSet set = new IntSet();
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertTrue(set.add(70000));
+		Assert.assertTrue(set.add(-5));
+		Assert.assertTrue(set.add(3));
+		Assert.assertFalse(set.add(3));
+		Assert.assertTrue(set.add(Integer.MIN_VALUE));
+		Assert.assertTrue(set.add(Integer.MAX_VALUE));
+		Assert.assertEquals(5, set.cardinality());
+		Assert.assertTrue(set.contains(-5));
+		Assert.assertFalse(set.contains(4));
+		Assert.assertEquals("[-2147483648, -5, 3, 70000, 2147483647]", Arrays.toString(set.toArray()));
+	}
+	
+	@Test
+	public void testDumpToBitmap() throws FunctionalException
+	{
+		// Multiples of 3 need bitmap containers, multiples of 100 array ones
+		IntSet threes = new IntRange(0, 300000).select(multipleOf(3)).dumpToBitmap();
+		IntSet hundreds = new IntRange(0, 300000).select(multipleOf(100)).dumpToBitmap();
+		Assert.assertEquals(100001, threes.cardinality());
+		Assert.assertEquals(3001, hundreds.count());
+		Assert.assertTrue(threes.contains(299997));
+		Assert.assertFalse(threes.contains(299998));
+		Assert.assertEquals(new IntRange(0, 300000).select(multipleOf(3)).sum(), threes.sum());
+		Assert.assertArrayEquals(new IntRange(0, 300000).select(multipleOf(100)).toArray(), hundreds.toArray());
+		
+		IntSet both = threes.and(hundreds);
+		Assert.assertEquals(new IntRange(0, 300000).select(multipleOf(300)).dumpToBitmap(), both);
+		Assert.assertEquals(1001, both.cardinality());
+		IntSet any = threes.or(hundreds);
+		Assert.assertEquals(100001 + 3001 - 1001, any.cardinality());
+		Assert.assertTrue(any.contains(200));
+		IntSet threesOnly = threes.andNot(hundreds);
+		Assert.assertEquals(100001 - 1001, threesOnly.cardinality());
+		Assert.assertFalse(threesOnly.contains(600));
+		Assert.assertEquals(threes, threesOnly.or(both));
+		Assert.assertTrue(threes.andNot(threes).isEmpty());
+	}
+}
@@ -1,26 +1,51 @@
 package fr.cantor.functional.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import fr.cantor.functional.CachedIterable;
 import fr.cantor.functional.Iterable;
 import fr.cantor.functional.IterableArray;
+import fr.cantor.functional.IterableList;
 import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Range;
 import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
 import fr.cantor.functional.functions.Identity;
+import fr.cantor.functional.functions.IndexedFunction1;
 import fr.cantor.functional.functions.methods.Method0;
 import fr.cantor.functional.functions.operators.IntegerAdd;
 import fr.cantor.functional.functions.operators.IntegerMultiply;
 import fr.cantor.functional.functions.predicates.FalsePredicate1;
 import fr.cantor.functional.functions.predicates.Predicate1;
 import fr.cantor.functional.functions.predicates.TruePredicate1;
+import fr.cantor.functional.functions.procedures.IndexedProcedure1;
 import fr.cantor.functional.nuple.Pair;
 
 public class TestIterable
 {
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n)
+		{
+			return n * n;
+		}
+	};
+	
+	private static final Predicate1<Integer> ODD = new Predicate1<Integer>()
+	{
+		public Boolean call(Integer n)
+		{
+			return n % 2 == 1;
+		}
+	};
+	
 	@Test
 	public void testCombineSameSize() throws FunctionalException
 	{
@@ -99,6 +124,38 @@ public class TestIterable
 		Assert.assertEquals("onk", astr.get(1));
 	}
 	
+	@Test
+	public void testIndexedSources() throws FunctionalException
+	{
+		IterableArray<String> array = new IterableArray<String>(new String[] { "a", "b", "c", "d", "e" }, 1, 4);
+		Assert.assertEquals(3, array.size());
+		Assert.assertEquals("c", array.get(1));
+		Assert.assertEquals("b,c,d", array.join(","));
+		List<Iterable<String>> parts = array.split(2);
+		Assert.assertEquals("b,c", parts.get(0).join(","));
+		Assert.assertEquals("d", parts.get(1).join(","));
+		
+		List<String> list = new ArrayList<String>();
+		list.add("x");
+		list.add("y");
+		Iterable<String> wrapped = Iterable.wrap(list);
+		Assert.assertTrue(wrapped instanceof IterableList);
+		Assert.assertEquals(2, wrapped.size());
+		Assert.assertEquals("x|y", wrapped.join("|"));
+		Assert.assertEquals("y", wrapped.split(2).get(1).first());
+		Assert.assertEquals(-1, Iterable.wrap(new java.util.LinkedList<String>(list)).size());
+		
+		// A wrapped list is a live view, only split parts keep their bounds
+		List<Iterable<String>> slices = wrapped.split(2);
+		list.add("z");
+		Assert.assertEquals(3, wrapped.size());
+		Assert.assertEquals("x|y|z", wrapped.join("|"));
+		Assert.assertEquals("y", slices.get(1).join("|"));
+		list.clear();
+		Assert.assertEquals("", wrapped.join("|"));
+		Assert.assertFalse(wrapped.iterator().hasNext());
+	}
+	
 	@Test
 	public void testJoin() throws FunctionalException
 	{
@@ -126,6 +183,53 @@ public class TestIterable
 		Assert.assertFalse(numbersWithIndex.hasNext());
 	}
 	
+	@Test
+	public void testMapWithIndex() throws FunctionalException
+	{
+		Iterable<String> indexed = array("a", "b", "c").mapWithIndex(new IndexedFunction1<String, String>()
+		{
+			public String call(int nIndex, String str) throws FunctionalException
+			{
+				return nIndex + str;
+			}
+		});
+		Assert.assertEquals("0a,1b,2c", indexed.join(","));
+		// Every iteration counts from 0
+		Assert.assertEquals("0a,1b,2c", indexed.join(","));
+		Assert.assertEquals("2c", indexed.split(2).get(1).join(","));
+		
+		final StringBuilder sb = new StringBuilder();
+		array("x", "y").eachWithIndex(new IndexedProcedure1<String>()
+		{
+			public Void call(int nIndex, String str) throws FunctionalException
+			{
+				sb.append(str).append(nIndex);
+				return null;
+			}
+		});
+		Assert.assertEquals("x0y1", sb.toString());
+	}
+	
+	@Test
+	public void testZipWith() throws FunctionalException
+	{
+		Function2<String, String, Integer> concat = new Function2<String, String, Integer>()
+		{
+			public String call(String str, Integer n) throws FunctionalException
+			{
+				return str + n;
+			}
+		};
+		Iterable<String> zipped = array("a", "b", "c").zipWith(array(1, 2), concat);
+		Assert.assertEquals("a1,b2", zipped.join(","));
+		Assert.assertEquals(2, zipped.size());
+		Iterator<String> it = zipped.iterator();
+		Assert.assertEquals("a1", it.next());
+		Assert.assertEquals("b2", it.next());
+		Assert.assertFalse(it.hasNext());
+		Assert.assertEquals("a1,b2,c3", array("a", "b", "c").zipWith(new Range(1, 5), concat).join(","));
+	}
+	
 	@Test
 	public void testAllAny() throws FunctionalException
 	{
@@ -176,6 +280,77 @@ public class TestIterable
 		}).first());
 	}
 	
+	@Test
+	public void testCache() throws FunctionalException
+	{
+		final int[] counter = new int[]{ 0 };
+		Iterable<Integer> squares = new Range(1, 10).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				counter[0] += 1;
+				return n * n;
+			}
+		});
+		
+		CachedIterable<Integer> cached = squares.cache();
+		Assert.assertEquals(Integer.valueOf(1), cached.first());
+		Assert.assertEquals(1, counter[0]);
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", cached.join(","));
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", cached.join(","));
+		Assert.assertTrue(cached.equals(squares));
+		Assert.assertEquals(20, counter[0]);
+		Assert.assertTrue(cached.isComplete());
+		Assert.assertEquals(10, cached.size());
+		Assert.assertEquals(385, (int) cached.concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		Assert.assertEquals(20, counter[0]);
+		
+		counter[0] = 0;
+		CachedIterable<Integer> capped = squares.cache(4);
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", capped.join(","));
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", capped.join(","));
+		Assert.assertFalse(capped.isComplete());
+		Assert.assertEquals(16, counter[0]);
+		
+		counter[0] = 0;
+		CachedIterable<Integer> unsized = squares.select(new TruePredicate1<Integer>()).cache(4);
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", unsized.join(","));
+		Assert.assertEquals("1,4,9,16,25,36,49,64,81,100", unsized.join(","));
+		Assert.assertEquals(24, counter[0]);
+	}
+	
+	@Test
+	public void testShortCircuit() throws FunctionalException
+	{
+		final int[] counter = new int[]{ 0 };
+		Iterable<Integer> numbers = new Range(1000000).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				counter[0] += 1;
+				return n;
+			}
+		});
+		Assert.assertEquals(Integer.valueOf(10), numbers.first(new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n >= 10;
+			}
+		}));
+		Assert.assertEquals(11, counter[0]);
+		Assert.assertFalse(numbers.all(new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n < 5;
+			}
+		}));
+		Assert.assertEquals(17, counter[0]);
+		Assert.assertEquals(Integer.valueOf(0), numbers.first());
+		Assert.assertEquals(18, counter[0]);
+	}
+	
 	@Test
 	public void testMap() throws FunctionalException, SecurityException, NoSuchMethodException
 	{
@@ -197,7 +372,149 @@ public class TestIterable
 		}));
 	}
 	
-	private <T> Iterable<T> array(T... values)
+	@Test
+	public void testCharacteristics() throws FunctionalException
+	{
+		Range range = new Range(1, 10);
+		Assert.assertTrue(range.hasCharacteristics(Iterable.ORDERED | Iterable.SIZED | Iterable.SORTED | Iterable.DISTINCT));
+		Iterable<Integer> squares = range.map(SQUARE);
+		Assert.assertEquals(Iterable.ORDERED | Iterable.SIZED, squares.characteristics());
+		Iterable<Integer> odds = range.select(ODD);
+		Assert.assertEquals(Iterable.ORDERED | Iterable.SORTED | Iterable.DISTINCT, odds.characteristics());
+		Assert.assertEquals(10, odds.estimateSize());
+		Assert.assertEquals(Iterable.ORDERED | Iterable.SIZED | Iterable.DISTINCT, squares.withIndex().characteristics());
+		Assert.assertEquals(Iterable.SIZED | Iterable.DISTINCT, range.concurrently().characteristics());
+		Assert.assertEquals(range.characteristics(), range.concurrently().ordered().characteristics());
+		Assert.assertTrue(array("a", "b").combine(array(1, 2, 3)).hasCharacteristics(Iterable.SIZED));
+		Assert.assertEquals(3, array("a", "b").combine(array(1, 2, 3)).size());
+		Assert.assertTrue(Iterable.wrap(new java.util.TreeSet<String>()).hasCharacteristics(Iterable.SORTED | Iterable.DISTINCT));
+		Assert.assertFalse(Iterable.wrap(new java.util.LinkedList<String>()).hasCharacteristics(Iterable.DISTINCT));
+	}
+	
+	@Test
+	public void testCount() throws FunctionalException
+	{
+		final int[] calls = new int[]{ 0 };
+		Iterable<Integer> counted = new Range(1, 10).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n)
+			{
+				calls[0] += 1;
+				return n;
+			}
+		});
+		Assert.assertEquals(10, counted.count());
+		Assert.assertEquals(5, counted.select(ODD).count());
+		Assert.assertEquals(10, calls[0]);
+		Assert.assertEquals(5, counted.select(ODD).concurrently(4).count());
+		
+		// Sizes differ: nothing is iterated
+		calls[0] = 0;
+		Assert.assertFalse(counted.equals(new Range(1, 11)));
+		Assert.assertEquals(0, calls[0]);
+		Assert.assertTrue(counted.equals(new Range(1, 10)));
+	}
+	
+	@Test
+	public void testDistinctSorted() throws FunctionalException
+	{
+		Range range = new Range(1, 10);
+		Assert.assertSame(range, range.distinct());
+		Assert.assertSame(range, range.sorted());
+		
+		Iterable<Integer> shuffled = array(3, 1, 2, 3, 1);
+		Assert.assertEquals(array(3, 1, 2), shuffled.distinct());
+		Assert.assertEquals(array(1, 1, 2, 3, 3), shuffled.sorted());
+		Assert.assertEquals(array(1, 2, 3), shuffled.sorted().distinct());
+		Assert.assertEquals(array(1, 2, 3), shuffled.distinct().sorted());
+		Assert.assertTrue(shuffled.sorted().distinct().hasCharacteristics(Iterable.SORTED | Iterable.DISTINCT));
+		Assert.assertEquals(5, shuffled.sorted().size());
+		Assert.assertEquals(array(0, 1, 4, 9), new Range(-3, 3).map(SQUARE).distinct().sorted());
+		Assert.assertEquals(new Range(1, 1000).dump(new ArrayList<Integer>()), new Range(1, 1000).concurrently(4).sorted().dump(new ArrayList<Integer>()));
+	}
+	
+	@Test
+	public void testGroupBy() throws FunctionalException
+	{
+		Iterable<String> words = array("plop", "onk", "plip", "a", "onk");
+		Function1<Integer, String> length = new Function1<Integer, String>()
+		{
+			public Integer call(String word)
+			{
+				return word.length();
+			}
+		};
+		Map<Integer, List<String>> groups = words.groupBy(length);
+		Assert.assertEquals(Arrays.asList(4, 3, 1), new ArrayList<Integer>(groups.keySet()));
+		Assert.assertEquals(Arrays.asList("plop", "plip"), groups.get(4));
+		Assert.assertEquals(Arrays.asList("onk", "onk"), groups.get(3));
+		
+		Map<Integer, Long> counts = words.countBy(length);
+		Assert.assertEquals(Arrays.asList(4, 3, 1), new ArrayList<Integer>(counts.keySet()));
+		Assert.assertEquals(Long.valueOf(2), counts.get(4));
+		Assert.assertEquals(Long.valueOf(1), counts.get(1));
+		
+		Map<Integer, Integer> sums = new Range(1, 10).aggregateBy(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n)
+			{
+				return n % 3;
+			}
+		}, 0, new IntegerAdd());
+		Assert.assertEquals(Arrays.asList(1, 2, 0), new ArrayList<Integer>(sums.keySet()));
+		Assert.assertEquals(Integer.valueOf(1 + 4 + 7 + 10), sums.get(1));
+		Assert.assertEquals(Integer.valueOf(3 + 6 + 9), sums.get(0));
+		
+		Pair<List<Integer>, List<Integer>> partition = new Range(1, 6).partition(ODD);
+		Assert.assertEquals(Arrays.asList(1, 3, 5), partition.first);
+		Assert.assertEquals(Arrays.asList(2, 4, 6), partition.second);
+		
+		Assert.assertTrue(new Range(0).groupBy(SQUARE).isEmpty());
+		Assert.assertTrue(new Range(0).partition(ODD).first.isEmpty());
+	}
+	
+	@Test
+	public void testFlatMap() throws FunctionalException
+	{
+		final int[] calls = new int[]{ 0 };
+		Iterable<Integer> expanded = new Range(1, 4).flatMap(new Function1<java.lang.Iterable<Integer>, Integer>()
+		{
+			public java.lang.Iterable<Integer> call(Integer n)
+			{
+				calls[0] += 1;
+				return new Range(1, n);
+			}
+		});
+		Assert.assertEquals("1,1,2,1,2,3,1,2,3,4", expanded.join(","));
+		Assert.assertEquals(array(1, 1, 2, 1, 2, 3, 1, 2, 3, 4), expanded);
+		Assert.assertEquals(10, expanded.count());
+		List<Iterable<Integer>> parts = expanded.split(2);
+		Assert.assertEquals(expanded.join(","), parts.get(0).join(",") + "," + parts.get(1).join(","));
+		// Inner Iterables are created as they are read
+		calls[0] = 0;
+		Assert.assertEquals(Integer.valueOf(1), expanded.first());
+		Assert.assertEquals(1, calls[0]);
+		
+		// Inner Iterables of the JDK, and elements expanding to nothing
+		Iterable<String> letters = array("ab", "", "c").flatMap(new Function1<java.lang.Iterable<String>, String>()
+		{
+			public java.lang.Iterable<String> call(String str)
+			{
+				return str.isEmpty() ? null : Arrays.asList(str.split(""));
+			}
+		});
+		Assert.assertEquals("a,b,c", letters.join(","));
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), letters.dump(new ArrayList<String>()));
+		
+		Iterable<Integer> concatenated = Iterable.concat(array(1, 2), Arrays.asList(3), new Range(0), new Range(4, 5));
+		Assert.assertEquals(array(1, 2, 3, 4, 5), concatenated);
+		Assert.assertEquals("4,5", concatenated.split(4).get(3).join(","));
+		Assert.assertEquals("", Iterable.<Integer>concat().join(","));
+	}
+	
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	private static <T> Iterable<T> array(T... values)
 	{
 		return new IterableArray<T>(values);
 	}
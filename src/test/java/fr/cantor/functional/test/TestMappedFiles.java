@@ -0,0 +1,269 @@
+package fr.cantor.functional.test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.Function2;
+import fr.cantor.functional.functions.operators.IntegerAdd;
+import fr.cantor.functional.io.MappedLines;
+import fr.cantor.functional.io.MappedRecords;
+import fr.cantor.functional.io.RecordEncoder;
+import fr.cantor.functional.io.TextEncoder;
+
+public class TestMappedFiles
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final Function1<String, CharSequence> TO_STRING = new Function1<String, CharSequence>()
+	{
+		public String call(CharSequence o) throws FunctionalException
+		{
+			return o.toString();
+		}
+	};
+	
+	private static final Function1<Integer, ByteBuffer> FIRST_INT = new Function1<Integer, ByteBuffer>()
+	{
+		public Integer call(ByteBuffer buffer) throws FunctionalException
+		{
+			return buffer.getInt(0);
+		}
+	};
+	
+	@Test
+	public void testLines() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("lines", ".txt");
+		try
+		{
+			Files.write(path, "plop\r\nonk\n\nthis line is longer than a segment\n\u00e9lan".getBytes(UTF8));
+			// Tiny segments to cross windows in the middle of lines
+			MappedLines lines = new MappedLines(path, UTF8, 8);
+			Assert.assertEquals("plop|onk||this line is longer than a segment|\u00e9lan", lines.map(TO_STRING).join("|"));
+			Assert.assertEquals(4, lines.first().length());
+			Assert.assertEquals('o', lines.first().charAt(2));
+			Assert.assertEquals("lo", lines.first().subSequence(1, 3).toString());
+			// Chars of a line which is not ASCII are decoded
+			CharSequence last = lines.dump(new ArrayList<CharSequence>()).get(4);
+			Assert.assertEquals(4, last.length());
+			Assert.assertEquals('\u00e9', last.charAt(0));
+			Assert.assertEquals("\u00e9l", last.subSequence(0, 2).toString());
+			Assert.assertEquals(5, new MappedLines(path, Charset.forName("ISO-8859-1")).dump(new ArrayList<CharSequence>()).get(4).length());
+			
+			List<Iterable<CharSequence>> parts = lines.split(3);
+			List<String> joined = new ArrayList<String>();
+			for ( Iterable<CharSequence> part : parts )
+			{
+				joined.add(part.map(TO_STRING).join("|"));
+			}
+			Assert.assertEquals("plop|onk||this line is longer than a segment|\u00e9lan", Iterable.wrap(joined).join("|"));
+			
+			List<String> concurrent = lines.map(TO_STRING).concurrently(4).dump(new ArrayList<String>());
+			Collections.sort(concurrent);
+			Assert.assertEquals(",onk,plop,this line is longer than a segment,\u00e9lan", Iterable.wrap(concurrent).join(","));
+			
+			Files.write(path, new byte[0]);
+			Assert.assertFalse(new MappedLines(path).iterator().hasNext());
+			Assert.assertEquals(1, new MappedLines(path).split(4).size());
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void testFixedRecords() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("records", ".bin");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(Files.newOutputStream(path));
+			for ( int i = 0; i < 100; i += 1 )
+			{
+				out.writeInt(i);
+				out.writeInt(-i);
+			}
+			out.writeShort(7);
+			out.close();
+			
+			MappedRecords records = MappedRecords.fixed(path, 8).withSegmentSize(20);
+			Assert.assertEquals(100, records.size());
+			Assert.assertEquals(4950, (int) records.map(FIRST_INT).inject(0, new IntegerAdd()));
+			Assert.assertEquals(Integer.valueOf(25), records.map(FIRST_INT).split(4).get(1).first());
+			Assert.assertEquals(4950, (int) records.map(FIRST_INT).concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void testLengthPrefixedRecords() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("records", ".bin");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(Files.newOutputStream(path));
+			for ( int i = 0; i < 10; i += 1 )
+			{
+				out.writeInt(i);
+				out.write(new byte[i], 0, i);
+			}
+			out.close();
+			
+			MappedRecords records = MappedRecords.lengthPrefixed(path).withSegmentSize(6);
+			Assert.assertNull(records.split(2));
+			Assert.assertEquals("0,1,2,3,4,5,6,7,8,9", records.map(new Function1<Integer, ByteBuffer>()
+			{
+				public Integer call(ByteBuffer buffer) throws FunctionalException
+				{
+					return buffer.remaining();
+				}
+			}).join(","));
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void testWriteText() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("lines", ".txt");
+		try
+		{
+			long nBytes = new Range(1, 3).map(new Function1<String, Integer>()
+			{
+				public String call(Integer n) throws FunctionalException
+				{
+					return "\u00e9" + n;
+				}
+			}).writeTo(path, new TextEncoder<String>());
+			Assert.assertEquals(12, nBytes);
+			Assert.assertEquals("\u00e91|\u00e92|\u00e93", new MappedLines(path).map(TO_STRING).join("|"));
+			
+			// Large enough to fill the buffers of every thread several times
+			Iterable<Integer> numbers = new Range(200000);
+			numbers.concurrently(4).ordered().writeTo(path, new TextEncoder<Integer>());
+			Assert.assertTrue(numbers.map(new Function1<String, Integer>()
+			{
+				public String call(Integer n) throws FunctionalException
+				{
+					return n.toString();
+				}
+			}).equals(new MappedLines(path).map(TO_STRING)));
+			
+			numbers.concurrently(4).writeTo(path, new TextEncoder<Integer>());
+			Assert.assertEquals(numbers.inject(0L, new Function2<Long, Long, Integer>()
+			{
+				public Long call(Long sum, Integer n) throws FunctionalException
+				{
+					return sum + n;
+				}
+			}), new MappedLines(path).inject(0L, new Function2<Long, Long, CharSequence>()
+			{
+				public Long call(Long sum, CharSequence line) throws FunctionalException
+				{
+					return sum + Integer.parseInt(line.toString());
+				}
+			}));
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+	
+	@Test(timeout = 60000)
+	public void testWriteOrderedParts() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("records", ".bin");
+		try
+		{
+			// Each part fills many more buffers than the output keeps for it
+			Function1<ByteBuffer, Integer> record = new Function1<ByteBuffer, Integer>()
+			{
+				public ByteBuffer call(Integer n) throws FunctionalException
+				{
+					ByteBuffer buffer = ByteBuffer.allocate(60000);
+					buffer.putInt(0, n);
+					return buffer;
+				}
+			};
+			Iterable<Integer> numbers = new Range(400);
+			Assert.assertEquals(400 * 60004, numbers.map(record).concurrently(4).ordered().writeTo(path, RecordEncoder.bytes()));
+			Assert.assertTrue(numbers.equals(MappedRecords.lengthPrefixed(path).map(FIRST_INT)));
+			
+			// The parts waiting for their turn fail instead of waiting forever
+			try
+			{
+				numbers.map(new Function1<Integer, Integer>()
+				{
+					public Integer call(Integer n) throws FunctionalException
+					{
+						if ( n == 90 )
+						{
+							throw new FunctionalException("failed");
+						}
+						return n;
+					}
+				}).map(record).concurrently(4).ordered().writeTo(path, RecordEncoder.bytes());
+				Assert.fail();
+			}
+			catch ( FunctionalException e )
+			{
+				Assert.assertEquals("failed", e.getMessage());
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void testWriteRecords() throws IOException, FunctionalException
+	{
+		Path path = Files.createTempFile("records", ".bin");
+		try
+		{
+			Iterable<ByteBuffer> records = new Range(10).map(new Function1<ByteBuffer, Integer>()
+			{
+				public ByteBuffer call(Integer n) throws FunctionalException
+				{
+					return ByteBuffer.allocate(n * 100000);
+				}
+			});
+			Assert.assertEquals(4 * 10 + 4500000, records.concurrently(3).ordered().writeTo(path, RecordEncoder.bytes()));
+			Assert.assertEquals("0,100000,200000,300000,400000,500000,600000,700000,800000,900000", 
+					MappedRecords.lengthPrefixed(path).map(new Function1<Integer, ByteBuffer>()
+			{
+				public Integer call(ByteBuffer buffer) throws FunctionalException
+				{
+					return buffer.remaining();
+				}
+			}).join(","));
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+}
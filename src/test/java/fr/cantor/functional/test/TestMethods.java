@@ -0,0 +1,59 @@
+package fr.cantor.functional.test;
+
+import java.nio.CharBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.IterableArray;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.methods.Method0;
+import fr.cantor.functional.functions.methods.Method1;
+import fr.cantor.functional.functions.methods.Method2;
+
+public class TestMethods
+{
+	@Test
+	public void testMethod0Polymorphic() throws FunctionalException
+	{
+		CharSequence anonymous = new CharSequence()
+		{
+			public int length() { return 42; }
+			
+			public char charAt(int index) { return 'a'; }
+			
+			public CharSequence subSequence(int start, int end) { return this; }
+		};
+		// More receiver classes than the polymorphic cache holds
+		CharSequence[] sequences = new CharSequence[]{ "abc", new StringBuilder("ab"), new StringBuffer("a"), 
+				CharBuffer.wrap("abcd"), anonymous, "", new StringBuilder() };
+		Assert.assertEquals("3,2,1,4,42,0,0", new IterableArray<CharSequence>(sequences).map(new Method0<Integer, CharSequence>("length")).join(","));
+		Assert.assertEquals("3,2,1,4,42,0,0", new IterableArray<CharSequence>(sequences).map(new Method0<Integer, CharSequence>("length")).join(","));
+	}
+	
+	@Test(expected = FunctionalException.class)
+	public void testMethod0Missing() throws FunctionalException
+	{
+		new Method0<Object, String>("plop").call("onk");
+	}
+	
+	@Test
+	public void testMethod1() throws FunctionalException
+	{
+		Assert.assertTrue(new Method1<Boolean, String, String>("startsWith").call("plop", "pl"));
+		Assert.assertEquals(Integer.valueOf(2), new Method1<Integer, String, String>("indexOf", String.class).call("plop", "op"));
+		Assert.assertEquals(Integer.valueOf(1), new Method1<Integer, String, Integer>("indexOf", int.class).call("plop", (int) 'l'));
+	}
+	
+	@Test(expected = FunctionalException.class)
+	public void testMethod1Ambiguous() throws FunctionalException
+	{
+		new Method1<Integer, String, String>("indexOf").call("plop", "op");
+	}
+	
+	@Test
+	public void testMethod2() throws FunctionalException
+	{
+		Assert.assertEquals("lo", new Method2<String, String, Integer, Integer>("substring").call("plop", 1, 3));
+	}
+}
@@ -0,0 +1,81 @@
+package fr.cantor.functional.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.operators.IntegerAdd;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+import fr.cantor.functional.metrics.PipelineMetrics;
+import fr.cantor.functional.metrics.WorkerMetrics;
+
+public class TestMetrics
+{
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return n * n;
+		}
+	};
+	
+	private static final Predicate1<Integer> EVEN = new Predicate1<Integer>()
+	{
+		public Boolean call(Integer n) throws FunctionalException
+		{
+			return n % 2 == 0;
+		}
+	};
+	
+	@Test
+	public void testStages() throws Exception
+	{
+		Assert.assertEquals(56, (int) new Range(1, 6).monitor("testStages").map(SQUARE).select(EVEN).inject(0, new IntegerAdd()));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName map = new ObjectName(PipelineMetrics.DOMAIN + ":type=Stage,pipeline=\"testStages\",stage=0-map");
+		ObjectName select = new ObjectName(PipelineMetrics.DOMAIN + ":type=Stage,pipeline=\"testStages\",stage=1-select");
+		ObjectName inject = new ObjectName(PipelineMetrics.DOMAIN + ":type=Stage,pipeline=\"testStages\",stage=2-inject");
+		Assert.assertEquals(6L, server.getAttribute(map, "ElementsIn"));
+		Assert.assertEquals(6L, server.getAttribute(map, "ElementsOut"));
+		Assert.assertEquals(6L, server.getAttribute(select, "ElementsIn"));
+		Assert.assertEquals(3L, server.getAttribute(select, "ElementsOut"));
+		Assert.assertEquals(3L, server.getAttribute(inject, "ElementsIn"));
+		
+		// Same name, same metrics
+		new Range(1, 6).monitor("testStages").map(SQUARE).select(EVEN).inject(0, new IntegerAdd());
+		Assert.assertEquals(12L, server.getAttribute(map, "ElementsIn"));
+		Assert.assertTrue(PipelineMetrics.get("testStages").stage(0, "map").getTimeNanos() > 0);
+	}
+	
+	@Test
+	public void testWorkers() throws FunctionalException
+	{
+		int sum = new Range(1, 1000).monitor("testWorkers").map(SQUARE).concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd());
+		Assert.assertEquals(333833500, sum);
+		Assert.assertEquals(1000, PipelineMetrics.get("testWorkers").stage(0, "map").getElementsIn());
+		WorkerMetrics workers = PipelineMetrics.get("testWorkers").getWorkers();
+		Assert.assertEquals(1, workers.getExecutions());
+		Assert.assertEquals(4, workers.getWorkers());
+		Assert.assertTrue(workers.getUtilization() > 0);
+		
+		// A source which cannot be split is shared under a lock
+		Iterable.wrap(new Range(1, 1000).dump(new LinkedList<Integer>())).map(SQUARE).concurrently(4).monitor("testWorkersShared").each(new Procedure1<Integer>()
+		{
+			public Void call(Integer n)
+			{
+				return null;
+			}
+		});
+		Assert.assertTrue(PipelineMetrics.get("testWorkersShared").getWorkers().getLockWaitNanos() > 0);
+	}
+}
@@ -0,0 +1,177 @@
+package fr.cantor.functional.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Iterator;
+import fr.cantor.functional.Pipeline;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.Sink;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.predicates.Predicate1;
+import fr.cantor.functional.functions.procedures.Procedure1;
+
+public class TestPipeline
+{
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return n * n;
+		}
+	};
+	
+	private static Predicate1<Integer> multipleOf(final int divisor)
+	{
+		return new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n % divisor == 0;
+			}
+		};
+	}
+	
+	@Test
+	public void testFusion() throws FunctionalException
+	{
+		Range range = new Range(1, 30);
+		Iterable<Integer> numbers = range;
+		for ( int i = 2; i < 6; i += 1 )
+		{
+			numbers = numbers.reject(multipleOf(i));
+		}
+		numbers = numbers.map(SQUARE);
+		Assert.assertTrue(numbers instanceof Pipeline);
+		Assert.assertSame(range, ((Pipeline<?, ?>) numbers).getSource());
+		Assert.assertEquals("1,49,121,169,289,361,529,841", numbers.join(","));
+		Assert.assertEquals("49", numbers.select(multipleOf(7)).join(","));
+	}
+	
+	@Test
+	public void testPushStops() throws FunctionalException
+	{
+		final List<Integer> received = new ArrayList<Integer>();
+		boolean bCompleted = new Range(100).map(SQUARE).push(new Sink<Integer>()
+		{
+			public boolean accept(Integer n) throws FunctionalException
+			{
+				received.add(n);
+				return received.size() < 3;
+			}
+		});
+		Assert.assertFalse(bCompleted);
+		Assert.assertEquals("[0, 1, 4]", received.toString());
+	}
+	
+	@Test
+	public void testSize() throws FunctionalException
+	{
+		Assert.assertEquals(10, new Range(10).map(SQUARE).size());
+		Assert.assertEquals(-1, new Range(10).map(SQUARE).select(multipleOf(2)).size());
+		Assert.assertEquals(3, new Range(10).select(multipleOf(2)).split(3).size());
+	}
+	
+	@Test
+	public void testNextBatch() throws FunctionalException
+	{
+		Iterator<Integer> it = new Range(1, 10).map(SQUARE).select(multipleOf(2)).iterator();
+		Object[] buffer = new Object[4];
+		Assert.assertEquals(2, it.nextBatch(buffer));
+		Assert.assertArrayEquals(new Object[]{ 4, 16, null, null }, buffer);
+		Assert.assertEquals(2, it.nextBatch(buffer));
+		Assert.assertEquals(Integer.valueOf(36), buffer[0]);
+		Assert.assertEquals(Integer.valueOf(64), buffer[1]);
+		Assert.assertTrue(it.hasNext());
+		Assert.assertEquals(1, it.nextBatch(buffer));
+		Assert.assertEquals(Integer.valueOf(100), buffer[0]);
+		Assert.assertEquals(0, it.nextBatch(buffer));
+		
+		List<Integer> list = new ArrayList<Integer>();
+		Iterator<Integer> synchronizedIt = Iterable.wrap(new Range(1, 5).dump(list)).iterator().synchronizedIterator();
+		Assert.assertEquals(4, synchronizedIt.nextBatch(buffer));
+		Assert.assertEquals(1, synchronizedIt.nextBatch(buffer));
+		Assert.assertEquals(Integer.valueOf(5), buffer[0]);
+		Assert.assertEquals(0, synchronizedIt.nextBatch(buffer));
+	}
+	
+	@Test
+	public void testTryAdvance() throws Exception
+	{
+		final List<Integer> received = new ArrayList<Integer>();
+		Procedure1<Integer> receive = new Procedure1<Integer>()
+		{
+			public Void call(Integer n)
+			{
+				synchronized ( received )
+				{
+					received.add(n);
+				}
+				return null;
+			}
+		};
+		Iterator<Integer> it = new Range(1, 10).map(SQUARE).select(multipleOf(2)).iterator();
+		Assert.assertTrue(it.tryAdvance(receive));
+		Assert.assertTrue(it.hasNext());
+		Assert.assertTrue(it.tryAdvance(receive));
+		Assert.assertEquals(Integer.valueOf(36), it.next());
+		while ( it.tryAdvance(receive) )
+		{
+		}
+		Assert.assertFalse(it.tryAdvance(receive));
+		Assert.assertEquals(Arrays.asList(4, 16, 64, 100), received);
+		
+		// The checked exception of a stage is thrown as is
+		try
+		{
+			new Range(1, 10).map(new Function1<Integer, Integer>()
+			{
+				public Integer call(Integer n) throws FunctionalException
+				{
+					throw new FunctionalException("plop");
+				}
+			}).iterator().tryAdvance(receive);
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+		
+		// Threads sharing an iterator each take distinct elements
+		received.clear();
+		final Iterator<Integer> shared = Iterable.wrap(new LinkedList<Integer>(new Range(1, 1000).dump(new ArrayList<Integer>()))).map(SQUARE).iterator().synchronizedIterator();
+		Thread[] threads = new Thread[4];
+		for ( int i = 0; i < threads.length; i += 1 )
+		{
+			threads[i] = new Thread(() ->
+			{
+				try
+				{
+					while ( shared.tryAdvance(receive) )
+					{
+					}
+				}
+				catch ( FunctionalException e )
+				{
+					throw new RuntimeException(e);
+				}
+			});
+			threads[i].start();
+		}
+		for ( Thread thread : threads )
+		{
+			thread.join();
+		}
+		Collections.sort(received);
+		Assert.assertEquals(new Range(1, 1000).map(SQUARE).dump(new ArrayList<Integer>()), received);
+	}
+}
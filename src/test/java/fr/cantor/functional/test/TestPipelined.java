@@ -0,0 +1,264 @@
+package fr.cantor.functional.test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.concurrent.PipelinedIterable;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.operators.IntegerAdd;
+import fr.cantor.functional.functions.predicates.Predicate1;
+
+public class TestPipelined
+{
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return n * n;
+		}
+	};
+	
+	@Test
+	public void testPipelined() throws FunctionalException
+	{
+		Iterable<Integer> squares = new Range(1, 10000).map(SQUARE);
+		List<Integer> expected = squares.dump(new ArrayList<Integer>());
+		Assert.assertEquals(expected, squares.pipelined(16).dump(new ArrayList<Integer>()));
+		Assert.assertEquals(expected, new Range(1, 10000).pipelined(1).map(SQUARE).pipelined(7).dump(new ArrayList<Integer>()));
+		
+		List<Integer> iterated = new ArrayList<Integer>();
+		for ( Integer n : squares.pipelined(16) )
+		{
+			iterated.add(n);
+		}
+		Assert.assertEquals(expected, iterated);
+		Assert.assertEquals(10000, squares.pipelined().size());
+	}
+	
+	@Test
+	public void testConcurrently() throws FunctionalException
+	{
+		Assert.assertEquals(Integer.valueOf(5050), new Range(1, 100).pipelined(8).concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+		Iterable<Integer> shared = Iterable.wrap(new LinkedList<Integer>(new Range(1, 100).dump(new ArrayList<Integer>())));
+		Assert.assertEquals(Integer.valueOf(5050), shared.pipelined(8).concurrently(4).inject(0, new IntegerAdd(), new IntegerAdd()));
+	}
+	
+	@Test
+	public void testBackpressure() throws FunctionalException
+	{
+		final AtomicInteger produced = new AtomicInteger();
+		final AtomicInteger producedWhileWaiting = new AtomicInteger();
+		Integer first = new Range(1, 100000).map(new Function1<Integer, Integer>()
+		{
+			public Integer call(Integer n) throws FunctionalException
+			{
+				produced.incrementAndGet();
+				return n;
+			}
+		}).pipelined(8).first(new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				try
+				{
+					Thread.sleep(100);
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FunctionalException(e);
+				}
+				producedWhileWaiting.set(produced.get());
+				return true;
+			}
+		});
+		Assert.assertEquals(Integer.valueOf(1), first);
+		// The batch taken by the consumer, the full queue and the element waiting to enter it
+		Assert.assertTrue(producedWhileWaiting.get() <= 8 + 8 + 1);
+		// The producer was stopped before first() returned
+		Assert.assertEquals(producedWhileWaiting.get(), produced.get());
+	}
+	
+	@Test
+	public void testStopped() throws Exception
+	{
+		final AtomicInteger running = new AtomicInteger();
+		Executor executor = runnable ->
+		{
+			running.incrementAndGet();
+			new Thread(() ->
+			{
+				try
+				{
+					runnable.run();
+				}
+				finally
+				{
+					running.decrementAndGet();
+				}
+			}).start();
+		};
+		for ( int i = 0; i < 5; i += 1 )
+		{
+			Assert.assertEquals(Integer.valueOf(0), new PipelinedIterable<Integer>(new Range(0, 100000), 16, executor).first());
+		}
+		// first() waited for the producers, which only have to leave their thread
+		awaitStopped(running, false);
+		
+		// Iterators abandoned before their end stop their producer once collected
+		Iterable<Integer> pipelined = new PipelinedIterable<Integer>(new Range(0, 100000), 16, executor);
+		Assert.assertEquals(Integer.valueOf(0), pipelined.map(SQUARE).first());
+		Assert.assertEquals("0,2,4", new Range(0, 2).zipWith(pipelined, new IntegerAdd()).join(","));
+		awaitStopped(running, true);
+	}
+	
+	private static void awaitStopped(AtomicInteger running, boolean bCollect) throws InterruptedException
+	{
+		long nDeadline = System.currentTimeMillis() + 10000;
+		while ( running.get() > 0 && System.currentTimeMillis() < nDeadline )
+		{
+			if ( bCollect )
+			{
+				System.gc();
+			}
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, running.get());
+	}
+	
+	@Test
+	public void testError()
+	{
+		try
+		{
+			new Range(1, 1000).map(new Function1<Integer, Integer>()
+			{
+				public Integer call(Integer n) throws FunctionalException
+				{
+					if ( n == 500 )
+					{
+						throw new FunctionalException("plop");
+					}
+					return n;
+				}
+			}).pipelined(4).dump(new ArrayList<Integer>());
+			Assert.fail();
+		}
+		catch ( FunctionalException e )
+		{
+			Assert.assertEquals("plop", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testPublisher() throws Exception
+	{
+		Iterable<Integer> squares = new Range(1, 1000).map(SQUARE);
+		List<Integer> expected = squares.dump(new ArrayList<Integer>());
+		Assert.assertEquals(expected, Iterable.from(squares.publisher(), 16).dump(new ArrayList<Integer>()));
+		Assert.assertEquals(Integer.valueOf(1), Iterable.from(squares.publisher(), 16).first());
+		
+		SubmissionPublisher<Integer> publisher = new SubmissionPublisher<Integer>();
+		try
+		{
+			final List<Integer> received = new ArrayList<Integer>();
+			Iterable<Integer> subscribed = Iterable.from(publisher, 4);
+			Thread consumer = new Thread(() ->
+			{
+				try
+				{
+					subscribed.dump(received);
+				}
+				catch ( FunctionalException e )
+				{
+					throw new RuntimeException(e);
+				}
+			});
+			consumer.start();
+			while ( publisher.getNumberOfSubscribers() == 0 )
+			{
+				Thread.sleep(1);
+			}
+			for ( int i = 1; i <= 1000; i += 1 )
+			{
+				publisher.submit(i * i);
+			}
+			publisher.close();
+			consumer.join();
+			Assert.assertEquals(expected, received);
+		}
+		finally
+		{
+			publisher.close();
+		}
+	}
+	
+	@Test
+	public void testSubscription() throws Exception
+	{
+		final List<Object> signals = new ArrayList<Object>();
+		final Flow.Subscription[] subscription = new Flow.Subscription[1];
+		new Range(1, 3).publisher(Runnable::run).subscribe(new Flow.Subscriber<Integer>()
+		{
+			public void onSubscribe(Flow.Subscription s)
+			{
+				subscription[0] = s;
+			}
+			
+			public void onNext(Integer n)
+			{
+				signals.add(n);
+			}
+			
+			public void onError(Throwable t)
+			{
+				signals.add(t.getClass());
+			}
+			
+			public void onComplete()
+			{
+				signals.add("complete");
+			}
+		});
+		Assert.assertTrue(signals.isEmpty());
+		subscription[0].request(2);
+		Assert.assertEquals(List.of(1, 2), signals);
+		subscription[0].request(5);
+		Assert.assertEquals(List.of(1, 2, 3, "complete"), signals);
+		
+		signals.clear();
+		new Range(1, 3).publisher(Runnable::run).subscribe(new Flow.Subscriber<Integer>()
+		{
+			public void onSubscribe(Flow.Subscription s)
+			{
+				s.request(0);
+			}
+			
+			public void onNext(Integer n)
+			{
+				signals.add(n);
+			}
+			
+			public void onError(Throwable t)
+			{
+				signals.add(t.getClass());
+			}
+			
+			public void onComplete()
+			{
+				signals.add("complete");
+			}
+		});
+		Assert.assertEquals(List.of(IllegalArgumentException.class), signals);
+	}
+}
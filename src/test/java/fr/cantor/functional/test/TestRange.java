@@ -1,11 +1,14 @@
 package fr.cantor.functional.test;
 
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import fr.cantor.functional.Iterable;
 import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
 
 public class TestRange
 {
@@ -49,4 +52,31 @@ public class TestRange
 		Assert.assertFalse(iterator.hasNext());
 		Assert.assertFalse(iterator.hasNext());
 	}
+
+	@Test
+	public void testSplit() throws FunctionalException
+	{
+		List<Iterable<Integer>> parts = new Range(1, 10).split(3);
+		Assert.assertEquals(3, parts.size());
+		Assert.assertEquals("1,2,3,4", parts.get(0).join(","));
+		Assert.assertEquals("5,6,7", parts.get(1).join(","));
+		Assert.assertEquals("8,9,10", parts.get(2).join(","));
+		Assert.assertEquals(4, parts.get(0).size());
+		Assert.assertEquals(2, new Range(2).split(8).size());
+	}
+	
+	@Test
+	public void testHugeRange() throws FunctionalException
+	{
+		// More integers than an int can count
+		Range huge = new Range(-10, Integer.MAX_VALUE);
+		Assert.assertEquals(-1, huge.size());
+		Assert.assertFalse(huge.hasCharacteristics(Iterable.SIZED));
+		Assert.assertNull(huge.split(4));
+		Assert.assertFalse(huge.equals(new Range(-10, 10)));
+		Assert.assertEquals(Integer.valueOf(-10), huge.first());
+		Range largest = new Range(0, Integer.MAX_VALUE - 1);
+		Assert.assertEquals(Integer.MAX_VALUE, largest.size());
+		Assert.assertEquals(4, largest.split(4).size());
+	}
 }
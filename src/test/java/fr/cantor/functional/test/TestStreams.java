@@ -0,0 +1,74 @@
+package fr.cantor.functional.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.cantor.functional.Iterable;
+import fr.cantor.functional.IterableArray;
+import fr.cantor.functional.Range;
+import fr.cantor.functional.exceptions.FunctionalException;
+import fr.cantor.functional.functions.Function1;
+import fr.cantor.functional.functions.predicates.Predicate1;
+
+public class TestStreams
+{
+	private static final Function1<Integer, Integer> SQUARE = new Function1<Integer, Integer>()
+	{
+		public Integer call(Integer n) throws FunctionalException
+		{
+			return n * n;
+		}
+	};
+	
+	@Test
+	public void testCharacteristics()
+	{
+		Spliterator<Integer> spliterator = new Range(1, 100).map(SQUARE).spliterator();
+		Assert.assertEquals(100, spliterator.getExactSizeIfKnown());
+		Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED | Spliterator.ORDERED));
+		Spliterator<Integer> prefix = spliterator.trySplit();
+		Assert.assertEquals(50, prefix.getExactSizeIfKnown());
+		Assert.assertEquals(50, spliterator.getExactSizeIfKnown());
+		Assert.assertTrue(prefix.tryAdvance(n -> Assert.assertEquals(1, (int) n)));
+		Assert.assertTrue(new Range(1, 100).spliterator().hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT));
+		Assert.assertNull(new Range(1, 100).spliterator().getComparator());
+		
+		Spliterator<Integer> filtered = new Range(1, 100).select(new Predicate1<Integer>()
+		{
+			public Boolean call(Integer n) throws FunctionalException
+			{
+				return n % 2 == 0;
+			}
+		}).spliterator();
+		Assert.assertEquals(-1, filtered.getExactSizeIfKnown());
+		Assert.assertFalse(filtered.hasCharacteristics(Spliterator.SIZED));
+		
+		List<String> list = new ArrayList<String>(Arrays.asList("a", "b", "c"));
+		Assert.assertEquals(3, Iterable.wrap(list).spliterator().getExactSizeIfKnown());
+	}
+	
+	@Test
+	public void testStreams()
+	{
+		Assert.assertEquals(338350, new Range(1, 100).map(SQUARE).parallelStream().mapToInt(n -> n).sum());
+		Assert.assertEquals("1,4,9", new Range(1, 3).map(SQUARE).stream().map(String::valueOf).collect(Collectors.joining(",")));
+		Assert.assertEquals(Arrays.asList("a", "b"), new IterableArray<String>(new String[]{ "a", "b" }).parallelStream().collect(Collectors.toList()));
+		// Unsized sources are split by batches
+		List<Integer> numbers = Iterable.from(Stream.iterate(0, n -> n + 1).limit(5000)).parallelStream().collect(Collectors.toList());
+		Assert.assertEquals(5000, numbers.size());
+		Assert.assertEquals(Integer.valueOf(4999), numbers.get(4999));
+	}
+	
+	@Test
+	public void testFromStream() throws FunctionalException
+	{
+		Assert.assertEquals("a,b", Iterable.from(Stream.of("a", "b")).join(","));
+	}
+}